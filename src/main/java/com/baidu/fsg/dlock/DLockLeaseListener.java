@@ -0,0 +1,40 @@
+/*
+ * Copyright (c) 2017 Baidu, Inc. All Rights Reserve.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.baidu.fsg.dlock;
+
+import com.baidu.fsg.dlock.domain.DLockConfig;
+
+/**
+ * Listener of the remote lease of {@link DistributedReentrantLock}. It is notified once the lease is lost while the
+ * lock is still hold locally, that is the remote record is released(expired) or hold by another one, or the local
+ * lease deadline is passed without successful expanding.<p>
+ *
+ * The listener is invoked in the lease expanding thread, it should return quickly, kind of setting an abort flag or
+ * interrupting the owner thread.
+ *
+ * @author yutianbao
+ */
+public interface DLockLeaseListener {
+
+    /**
+     * Invoked when the remote lease is lost
+     *
+     * @param lockConfig configuration of the lost lock
+     * @param owner the local owner thread while losing, may be null if the lock is retained by the process
+     */
+    void onLeaseLost(DLockConfig lockConfig, Thread owner);
+
+}
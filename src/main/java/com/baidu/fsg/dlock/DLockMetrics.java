@@ -0,0 +1,104 @@
+/*
+ * Copyright (c) 2017 Baidu, Inc. All Rights Reserve.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.baidu.fsg.dlock;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Metrics of a {@link DistributedReentrantLock}, the counters are accumulated since the lock is created.<p>
+ *
+ * The expired holds are the local holds that outlived the remote lease, the remote unlock is skipped for them,
+ * so that the futile remote calls are avoided while redis is degraded.
+ *
+ * @author yutianbao
+ */
+public class DLockMetrics {
+
+    /**
+     * Count of the remote lock acquired
+     */
+    private final LongAdder acquiredCount = new LongAdder();
+    /**
+     * Count of the lease expanded successfully
+     */
+    private final LongAdder expandedCount = new LongAdder();
+    /**
+     * Count of the lease lost while holding
+     */
+    private final LongAdder leaseLostCount = new LongAdder();
+    /**
+     * Count of the remote unlock command sent
+     */
+    private final LongAdder remoteUnlockCount = new LongAdder();
+    /**
+     * Count of the holds released after the lease expired, the remote unlock is skipped
+     */
+    private final LongAdder expiredHoldCount = new LongAdder();
+
+    /**
+     * Recorders
+     */
+    void recordAcquired() {
+        acquiredCount.increment();
+    }
+
+    void recordExpanded() {
+        expandedCount.increment();
+    }
+
+    void recordLeaseLost() {
+        leaseLostCount.increment();
+    }
+
+    void recordRemoteUnlock() {
+        remoteUnlockCount.increment();
+    }
+
+    void recordExpiredHold() {
+        expiredHoldCount.increment();
+    }
+
+    /**
+     * Getters
+     */
+    public long getAcquiredCount() {
+        return acquiredCount.sum();
+    }
+
+    public long getExpandedCount() {
+        return expandedCount.sum();
+    }
+
+    public long getLeaseLostCount() {
+        return leaseLostCount.sum();
+    }
+
+    public long getRemoteUnlockCount() {
+        return remoteUnlockCount.sum();
+    }
+
+    public long getExpiredHoldCount() {
+        return expiredHoldCount.sum();
+    }
+
+    @Override
+    public String toString() {
+        return "DLockMetrics[acquired=" + getAcquiredCount() + ", expanded=" + getExpandedCount() + ", leaseLost="
+                + getLeaseLostCount() + ", remoteUnlock=" + getRemoteUnlockCount() + ", expiredHold="
+                + getExpiredHoldCount() + "]";
+    }
+
+}
@@ -0,0 +1,148 @@
+/*
+ * Copyright (c) 2017 Baidu, Inc. All Rights Reserve.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.baidu.fsg.dlock;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.baidu.fsg.dlock.domain.DLockConfig;
+import com.baidu.fsg.dlock.domain.DLockEntity;
+import com.baidu.fsg.dlock.exception.DLockProcessException;
+import com.baidu.fsg.dlock.processor.DLockProcessor;
+
+/**
+ * DLockRegistry tracks the {@link DistributedReentrantLock}s whose remote lock is hold by current process, so that
+ * all of them can be released in bulk while shutting down, instead of waiting for the leases to expire.<p>
+ *
+ * The held locks are released by one {@link DLockProcessor#updateForUnlockAll(List, List)} call of each processor,
+ * and their lease expanding is stopped. The local owners keep running, but their locks are not held remotely any
+ * more(see {@link DistributedReentrantLock#isHeldRemotely()}), and the following unlock makes no remote call. The
+ * leases are lost as usual, the {@link DLockLeaseListener}s are notified and the metrics are recorded.<p>
+ *
+ * It is called by {@link com.baidu.fsg.dlock.support.DLockGenerator} while the spring context is closed, or by the
+ * JVM shutdown hook installed with {@link #installShutdownHook()}.
+ *
+ * @author yutianbao
+ */
+public final class DLockRegistry {
+    private static final Logger LOGGER = LoggerFactory.getLogger(DLockRegistry.class);
+
+    /**
+     * Locks held remotely by current process
+     */
+    private static final Set<DistributedReentrantLock> HELD_LOCKS = ConcurrentHashMap.newKeySet();
+
+    /**
+     * JVM shutdown hook, guarded by the class
+     */
+    private static Thread shutdownHook;
+
+    private DLockRegistry() {
+    }
+
+    /**
+     * Register the lock once its remote lock is acquired
+     */
+    static void register(DistributedReentrantLock lock) {
+        HELD_LOCKS.add(lock);
+    }
+
+    /**
+     * Unregister the lock once its remote lock is released or lost
+     */
+    static void unregister(DistributedReentrantLock lock) {
+        HELD_LOCKS.remove(lock);
+    }
+
+    /**
+     * Count of the locks held remotely by current process
+     */
+    public static int getHeldCount() {
+        return HELD_LOCKS.size();
+    }
+
+    /**
+     * Release all the held locks in bulk
+     *
+     * @return count of the released remote locks
+     */
+    public static int releaseAll() {
+        return releaseAll(null);
+    }
+
+    /**
+     * Release the held locks of the lock processor in bulk, all the held locks if the processor is null
+     *
+     * @param lockProcessor
+     * @return count of the released remote locks
+     */
+    public static int releaseAll(DLockProcessor lockProcessor) {
+        // group the valid leases by processor, the locks are detached from renewal at first
+        Map<DLockProcessor, List<DLockEntity>> lockGroups = new IdentityHashMap<>();
+        Map<DLockProcessor, List<DLockConfig>> configGroups = new IdentityHashMap<>();
+        for (DistributedReentrantLock lock : HELD_LOCKS) {
+            if (lockProcessor != null && lock.getLockProcessor() != lockProcessor) {
+                continue;
+            }
+
+            HELD_LOCKS.remove(lock);
+            DLockEntity currentLock = lock.detachForRelease();
+            if (currentLock != null) {
+                lockGroups.computeIfAbsent(lock.getLockProcessor(), p -> new ArrayList<>()).add(currentLock);
+                configGroups.computeIfAbsent(lock.getLockProcessor(), p -> new ArrayList<>()).add(
+                        lock.getLockConfig());
+            }
+        }
+
+        // release each group in one call
+        int released = 0;
+        for (Map.Entry<DLockProcessor, List<DLockEntity>> entry : lockGroups.entrySet()) {
+            List<DLockConfig> lockConfigs = configGroups.get(entry.getKey());
+            try {
+                List<DLockConfig> lost = entry.getKey().updateForUnlockAll(entry.getValue(), lockConfigs);
+                released += lockConfigs.size() - lost.size();
+            } catch (DLockProcessException e) {
+                // NOPE. Locks will be deleted automatic after the expire time.
+                LOGGER.warn("Detached & unregistered the held locks, but fail to release them remotely, they will "
+                        + "expire after the lease, count:" + lockConfigs.size(), e);
+            }
+        }
+
+        if (released > 0) {
+            LOGGER.info("Released the held locks, count:{}", released);
+        }
+        return released;
+    }
+
+    /**
+     * Install the JVM shutdown hook releasing all the held locks, only once
+     */
+    public static synchronized void installShutdownHook() {
+        if (shutdownHook != null) {
+            return;
+        }
+
+        shutdownHook = new Thread(DLockRegistry::releaseAll, "DLockShutdownHook");
+        Runtime.getRuntime().addShutdownHook(shutdownHook);
+    }
+}
@@ -0,0 +1,247 @@
+/*
+ * Copyright (c) 2017 Baidu, Inc. All Rights Reserve.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.baidu.fsg.dlock;
+
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.LockSupport;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.baidu.fsg.dlock.domain.DLockConfig;
+import com.baidu.fsg.dlock.exception.DLockProcessException;
+import com.baidu.fsg.dlock.processor.DLockProcessor;
+
+/**
+ * DistributedCondition implements the {@link Condition} of {@link DistributedReentrantLock} across nodes.
+ * The conditions with the same name of the same lock unique key are the same one on all nodes.<p>
+ *
+ * The waiter registers itself remotely before releasing the lock, then waits for the signal token(blocking pop of
+ * redis), and re-acquires the lock through the normal CLH path. The signal pushes tokens only for the registered
+ * waiters. The waiter unregisters itself if it is timeout or interrupted, or consumes the token if it has been
+ * signaled already.<p>
+ *
+ * The remote waiting is blocked in seconds, the last fraction of a timed waiting is polled in short slices. The
+ * registered waiter is renewed periodically while waiting, the waiters left by the crashed nodes are expired.<p>
+ *
+ * <B>Note:</B> Each waiting thread occupies a redis connection while blocking, of the dedicated condition pool if it
+ * is configured(see {@link com.baidu.fsg.dlock.jedis.JedisClient}). A waiter may wake up spuriously
+ * on redis failures, or if the other waiter is crashed with its signal, the caller should check the predicate in
+ * a loop as usual.
+ *
+ * @author yutianbao
+ */
+public class DistributedCondition implements Condition {
+    private static final Logger LOGGER = LoggerFactory.getLogger(DistributedCondition.class);
+
+    /**
+     * Max blocking time(ms) of a remote waiting, the interruption is checked between blockings
+     */
+    private static final long MAX_BLOCK_MILLIS = 1000;
+
+    /**
+     * Polling interval(ms) for the last fraction of the timed waiting, which is shorter than a remote blocking
+     */
+    private static final long POLL_INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos(50);
+
+    /**
+     * Interval of renewing the registered waiter while waiting
+     */
+    private static final long RENEW_INTERVAL_NANOS = TimeUnit.MINUTES.toNanos(1);
+
+    /**
+     * The owner lock
+     */
+    private final DistributedReentrantLock lock;
+    /**
+     * Lock configuration & processor
+     */
+    private final DLockConfig lockConfig;
+    private final DLockProcessor lockProcessor;
+    /**
+     * Condition name
+     */
+    private final String name;
+
+    /**
+     * Constructor with the owner lock and the condition name
+     */
+    DistributedCondition(DistributedReentrantLock lock, DLockConfig lockConfig, DLockProcessor lockProcessor,
+            String name) {
+        this.lock = lock;
+        this.lockConfig = lockConfig;
+        this.lockProcessor = lockProcessor;
+        this.name = name;
+    }
+
+    @Override
+    public void await() throws InterruptedException {
+        doAwait(false, 0, true);
+    }
+
+    @Override
+    public void awaitUninterruptibly() {
+        try {
+            doAwait(false, 0, false);
+        } catch (InterruptedException e) {
+            // NOPE. Never thrown for uninterruptible waiting
+        }
+    }
+
+    @Override
+    public long awaitNanos(long nanosTimeout) throws InterruptedException {
+        return doAwait(true, nanosTimeout, true);
+    }
+
+    @Override
+    public boolean await(long time, TimeUnit unit) throws InterruptedException {
+        return doAwait(true, unit.toNanos(time), true) > 0;
+    }
+
+    @Override
+    public boolean awaitUntil(Date deadline) throws InterruptedException {
+        long nanosTimeout = TimeUnit.MILLISECONDS.toNanos(deadline.getTime() - System.currentTimeMillis());
+        return doAwait(true, nanosTimeout, true) > 0;
+    }
+
+    /**
+     * Wakes up one waiting thread, on any node
+     *
+     * @throws IllegalMonitorStateException if the current thread does not hold the lock
+     */
+    @Override
+    public void signal() {
+        doSignal(false);
+    }
+
+    /**
+     * Wakes up all the waiting threads, on all nodes
+     *
+     * @throws IllegalMonitorStateException if the current thread does not hold the lock
+     */
+    @Override
+    public void signalAll() {
+        doSignal(true);
+    }
+
+    /**
+     * Get the condition name
+     */
+    public String getName() {
+        return name;
+    }
+
+    private void doSignal(boolean all) {
+        if (!lock.isHeldByCurrentThread()) {
+            throw new IllegalMonitorStateException();
+        }
+
+        lockProcessor.signalCondition(lockConfig, name, all);
+    }
+
+    /**
+     * Release the lock and wait for the signal, the lock is re-acquired before return
+     *
+     * @return the estimated remaining nanos for the timed waiting, a value less than or equal to zero if timeout
+     */
+    private long doAwait(boolean timed, long nanosTimeout, boolean interruptible) throws InterruptedException {
+        if (!lock.isHeldByCurrentThread()) {
+            throw new IllegalMonitorStateException();
+        }
+        if (interruptible && Thread.interrupted()) {
+            throw new InterruptedException();
+        }
+
+        long deadline = System.nanoTime() + nanosTimeout;
+        if (timed && nanosTimeout <= 0) {
+            return nanosTimeout;
+        }
+
+        // register before releasing, so that the signal after releasing is never lost
+        lockProcessor.addConditionWaiter(lockConfig, name);
+        int holds = lock.fullyRelease();
+
+        boolean signaled = false;
+        boolean interrupted = false;
+        long renewTime = System.nanoTime() + RENEW_INTERVAL_NANOS;
+        try {
+            while (!signaled) {
+                if (Thread.interrupted()) {
+                    interrupted = true;
+                    if (interruptible) {
+                        break;
+                    }
+                }
+
+                long remainingMillis = MAX_BLOCK_MILLIS;
+                if (timed) {
+                    long remainingNanos = deadline - System.nanoTime();
+                    if (remainingNanos <= 0) {
+                        break;
+                    }
+                    remainingMillis = Math.min(MAX_BLOCK_MILLIS, TimeUnit.NANOSECONDS.toMillis(remainingNanos));
+                }
+
+                // the remote waiting is blocked in seconds, poll in short slices for the last fraction
+                boolean polling = remainingMillis < MAX_BLOCK_MILLIS;
+                try {
+                    signaled = lockProcessor.awaitConditionSignal(lockConfig, name, polling ? 0 : remainingMillis);
+
+                    if (!signaled && System.nanoTime() - renewTime >= 0) {
+                        lockProcessor.renewConditionWaiter(lockConfig, name);
+                        renewTime = System.nanoTime() + RENEW_INTERVAL_NANOS;
+                    }
+                } catch (DLockProcessException e) {
+                    // wake up spuriously
+                    break;
+                }
+
+                if (!signaled && polling) {
+                    LockSupport.parkNanos(this, Math.min(POLL_INTERVAL_NANOS, deadline - System.nanoTime()));
+                }
+            }
+
+        } finally {
+            if (!signaled) {
+                try {
+                    signaled = lockProcessor.cancelConditionWaiter(lockConfig, name);
+                } catch (DLockProcessException e) {
+                    LOGGER.warn("Fail to cancel waiter for condition:" + name + " of key:"
+                            + lockConfig.getLockUniqueKey(), e);
+                }
+            }
+
+            lock.reacquire(holds);
+        }
+
+        // the consumed signal is never discarded by the interruption, which is re-asserted instead
+        if (interrupted) {
+            if (interruptible && !signaled) {
+                throw new InterruptedException();
+            }
+            Thread.currentThread().interrupt();
+        }
+
+        if (!timed) {
+            return 0;
+        }
+        long remaining = deadline - System.nanoTime();
+        return signaled && remaining <= 0 ? 1 : remaining;
+    }
+
+}
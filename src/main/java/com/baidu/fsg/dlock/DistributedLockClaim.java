@@ -0,0 +1,268 @@
+/*
+ * Copyright (c) 2017 Baidu, Inc. All Rights Reserve.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.baidu.fsg.dlock;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.util.Assert;
+
+import com.baidu.fsg.dlock.domain.DLockConfig;
+import com.baidu.fsg.dlock.domain.DLockEncoding;
+import com.baidu.fsg.dlock.domain.DLockEntity;
+import com.baidu.fsg.dlock.domain.DLockScope;
+import com.baidu.fsg.dlock.domain.DLockStatus;
+import com.baidu.fsg.dlock.exception.DLockProcessException;
+import com.baidu.fsg.dlock.processor.DLockProcessor;
+import com.baidu.fsg.dlock.support.HostLockTable;
+import com.baidu.fsg.dlock.utils.LockerUtils;
+
+/**
+ * DistributedLockClaim claims any count of the partition locks(kind of BATCH_PROCESS_LOCK of the partitions) in one
+ * round trip, instead of trying the partitions one by one.<p>
+ *
+ * The claimed locks are {@link DistributedReentrantLock}s of {@link DLockScope#PROCESS}, which are retained by the
+ * process without local owner. Any local thread can take over the claimed lock by lock() or tryLock() without remote
+ * call, and the partition is released by the following unlock(). The leases of all the claimed locks are expanded by
+ * one shared renewal thread of the claim, also in one round trip.<p>
+ *
+ * The partitions should share the same lease & encoding, and the fair lock is not supported.
+ *
+ * @author yutianbao
+ */
+public class DistributedLockClaim {
+    private static final Logger LOGGER = LoggerFactory.getLogger(DistributedLockClaim.class);
+
+    /**
+     * Locks of the partitions keyed by lock target, in the claiming order
+     */
+    private final Map<String, DistributedReentrantLock> locks = new LinkedHashMap<>();
+
+    /**
+     * Lock processor
+     */
+    private final DLockProcessor lockProcessor;
+
+    /**
+     * Locker of this claim, shared by the claimed locks
+     */
+    private final byte[] claimLockerBytes = LockerUtils.newInstanceLockerBytes();
+    private final String claimLocker = LockerUtils.decodeLocker(claimLockerBytes);
+
+    /**
+     * Renewal interval(ms) of the claimed locks
+     */
+    private final long renewInterval;
+
+    /**
+     * Shared renewal thread, guarded by this
+     */
+    private Thread renewThread;
+
+    /**
+     * Constructor with the partition lock configurations and lock processor
+     */
+    public DistributedLockClaim(List<DLockConfig> lockConfigs, DLockProcessor lockProcessor) {
+        Assert.notEmpty(lockConfigs, "lockConfigs can't be empty!");
+
+        DLockConfig first = lockConfigs.get(0);
+        for (DLockConfig lockConfig : lockConfigs) {
+            Assert.isTrue(lockConfig.getLockScope() == DLockScope.PROCESS, "lock scope must be PROCESS!");
+            Assert.isTrue(!lockConfig.isFair(), "fair lock is not supported!");
+            Assert.isTrue(lockConfig.getMillisLease() == first.getMillisLease(), "lease must be the same!");
+            Assert.isTrue(lockConfig.getEncoding() == first.getEncoding(), "encoding must be the same!");
+
+            locks.put(lockConfig.getLockTarget(), new DistributedReentrantLock(lockConfig, lockProcessor));
+        }
+        Assert.isTrue(locks.size() == lockConfigs.size(), "lock targets must be distinct!");
+
+        this.lockProcessor = lockProcessor;
+        this.renewInterval = first.getMillisRenewInterval();
+    }
+
+    /**
+     * Set the lock table shared by the processes on the host for the partition locks, null to disable the host
+     * coordination
+     */
+    public synchronized void setHostLockTable(HostLockTable hostLockTable) {
+        for (DistributedReentrantLock lock : locks.values()) {
+            lock.setHostLockTable(hostLockTable);
+        }
+    }
+
+    /**
+     * Claim up to the count of free partitions in one round trip, the partitions claimed already are skipped.
+     *
+     * @param count max count of the partitions to claim
+     * @return the newly claimed locks
+     */
+    public synchronized List<DistributedReentrantLock> claim(int count) {
+        Assert.isTrue(count > 0, "count must greater than zero!");
+
+        List<DLockConfig> candidates = new ArrayList<>();
+        for (DistributedReentrantLock lock : locks.values()) {
+            if (lock.getRemoteHeldLock() == null) {
+                candidates.add(lock.getLockConfig());
+            }
+        }
+        if (candidates.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        DLockEntity newLock = newProcessLock(candidates.get(0));
+        long startNanos = System.nanoTime();
+        List<DLockConfig> claimedConfigs = lockProcessor.updateForClaim(newLock, candidates, count);
+
+        List<DistributedReentrantLock> claimed = new ArrayList<>(claimedConfigs.size());
+        for (DLockConfig lockConfig : claimedConfigs) {
+            DistributedReentrantLock lock = locks.get(lockConfig.getLockTarget());
+            lock.adoptClaimed(newLock.copyLocker(), startNanos);
+            claimed.add(lock);
+        }
+
+        if (!claimed.isEmpty()) {
+            startRenewThread();
+        }
+        return claimed;
+    }
+
+    /**
+     * Get the locks of the partitions which are hold by current process with the locker of this claim. The partition
+     * re-acquired by lock() after releasing is hold with its own locker, which is not a claimed one any more.
+     */
+    public synchronized List<DistributedReentrantLock> getClaimedLocks() {
+        List<DistributedReentrantLock> claimed = new ArrayList<>();
+        for (DistributedReentrantLock lock : locks.values()) {
+            if (isClaimed(lock)) {
+                claimed.add(lock);
+            }
+        }
+        return claimed;
+    }
+
+    /**
+     * Release the claimed locks which are not taken over by the local threads
+     */
+    public synchronized void releaseAll() {
+        for (DistributedReentrantLock lock : locks.values()) {
+            if (isClaimed(lock) && lock.tryLock()) {
+                lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Whether the remote lock is hold with the locker of this claim
+     */
+    private boolean isClaimed(DistributedReentrantLock lock) {
+        DLockEntity heldLock = lock.getRemoteHeldLock();
+        return heldLock != null && claimLocker.equals(heldLock.getLocker());
+    }
+
+    /**
+     * Start the shared renewal thread if not running
+     */
+    private void startRenewThread() {
+        if (renewThread != null) {
+            return;
+        }
+
+        renewThread = new Thread(this::renewLoop, "DLockClaimRenewThread");
+        renewThread.setDaemon(true);
+        renewThread.start();
+    }
+
+    /**
+     * Expand the leases of the claimed locks periodically, exit once no lock is claimed
+     */
+    private void renewLoop() {
+        while (true) {
+            try {
+                Thread.sleep(renewInterval);
+            } catch (InterruptedException e) {
+                synchronized (this) {
+                    renewThread = null;
+                }
+                return;
+            }
+
+            List<DistributedReentrantLock> claimed;
+            synchronized (this) {
+                claimed = getClaimedLocks();
+                if (claimed.isEmpty()) {
+                    renewThread = null;
+                    return;
+                }
+            }
+            renew(claimed);
+        }
+    }
+
+    /**
+     * Expand the leases with the locker of this claim in one round trip, the lost locks are notified
+     */
+    void renew(List<DistributedReentrantLock> claimed) {
+        List<DLockConfig> lockConfigs = new ArrayList<>(claimed.size());
+        for (DistributedReentrantLock lock : claimed) {
+            lockConfigs.add(lock.getLockConfig());
+        }
+        if (lockConfigs.isEmpty()) {
+            return;
+        }
+        DLockEntity leaseLock = newProcessLock(lockConfigs.get(0));
+
+        long startNanos = System.nanoTime();
+        try {
+            List<DLockConfig> lost = lockProcessor.expandLockExpireAll(leaseLock, lockConfigs);
+            for (DistributedReentrantLock lock : claimed) {
+                if (lost.contains(lock.getLockConfig())) {
+                    // the remote lock is released or hold by the other one
+                    lock.leaseLost();
+                } else {
+                    lock.claimedLeaseExpanded(startNanos);
+                }
+            }
+
+        } catch (DLockProcessException e) {
+            // retry until the lease is expired
+            LOGGER.warn("Fail to expand the leases of claimed locks, count:" + claimed.size(), e);
+            for (DistributedReentrantLock lock : claimed) {
+                if (!lock.isHeldRemotely()) {
+                    lock.leaseLost();
+                }
+            }
+        }
+    }
+
+    /**
+     * New entity with the locker of this claim
+     */
+    private DLockEntity newProcessLock(DLockConfig lockConfig) {
+        DLockEntity lock = new DLockEntity();
+        lock.setLocker(LockerUtils.decodeLocker(claimLockerBytes));
+        if (lockConfig.getEncoding() == DLockEncoding.COMPACT) {
+            lock.setLockerBytes(claimLockerBytes);
+        }
+        lock.setLockTime(System.currentTimeMillis());
+        lock.setLockStatus(DLockStatus.PROCESSING);
+        return lock;
+    }
+}
@@ -15,20 +15,36 @@
  */
 package com.baidu.fsg.dlock;
 
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
-import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
 import java.util.concurrent.locks.Condition;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.LockSupport;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.baidu.fsg.dlock.domain.DLockAcquireResult;
 import com.baidu.fsg.dlock.domain.DLockConfig;
+import com.baidu.fsg.dlock.domain.DLockEncoding;
 import com.baidu.fsg.dlock.domain.DLockEntity;
+import com.baidu.fsg.dlock.domain.DLockScope;
 import com.baidu.fsg.dlock.domain.DLockStatus;
+import com.baidu.fsg.dlock.exception.CircuitOpenException;
 import com.baidu.fsg.dlock.exception.DLockProcessException;
+import com.baidu.fsg.dlock.exception.LeaseLostException;
 import com.baidu.fsg.dlock.exception.OptimisticLockingException;
 import com.baidu.fsg.dlock.processor.DLockProcessor;
-import com.baidu.fsg.dlock.utils.NetUtils;
+import com.baidu.fsg.dlock.support.HostLockTable;
+import com.baidu.fsg.dlock.utils.LockerUtils;
 
 /**
  * DistributedReentrantLock implements the lock,tryLock syntax of {@link Lock} by different mechanisms:<br>
@@ -41,12 +57,76 @@ import com.baidu.fsg.dlock.utils.NetUtils;
  * so that the other competitor can try to lock.<p>
  *
  * We use a variant of CLH lock queue for the competitor threads, provides an unfair implement to make high
- * throughput.
+ * throughput.<p>
+ *
+ * With {@link DLockConfig#isFair()}, the waiters across nodes register in a remote FIFO queue, and the unlocking
+ * hands the lock over to the first waiter directly. The local CLH queue preserves the order on each node, only its
+ * head competes remotely. It bounds the tail latency under heavy contention, with some throughput cost. Each waiter
+ * competes with its own ticket locker, so that the lock handed over is taken by that waiter only, never by the other
+ * threads(or lock instances) sharing the thread or instance locker.<p>
+ *
+ * The head waiter spins for a bounded time instead of parking, if the local owner is running and its hold time is
+ * historically short(tracked by an EWMA of this lock), so that the handover of the micro critical sections avoids
+ * the park/unpark latency.<p>
+ *
+ * With the {@link DLockScope#PROCESS} scope, the remote lock is owned by this lock instance of the process, and the
+ * owner thread & reentrancy are tracked locally. The remote lock is retained and handed over to the queued threads while unlocking, so that
+ * the consecutive local critical sections do not make any extra remote call.<p>
+ *
+ * The remote lease is tracked locally by a monotonic deadline, which is refreshed by each successful locking or
+ * expanding. The holder can check the lease through {@link #isHeldRemotely()} or {@link #checkValidity()} without
+ * any remote call, and the {@link DLockLeaseListener}s are notified once the lease is lost. The remote unlock is
+ * skipped if the lease is expired locally, the expired holds are reported by {@link DLockMetrics}.<p>
+ *
+ * With the optional {@link HostLockTable}, only the process holding the host slot of the key competes remotely, the
+ * slot is held while the process holds(or waits for) the remote lock, and the other processes on the host fail
+ * locally without any remote call.<p>
+ *
+ * The remote locks held by the process are tracked by {@link DLockRegistry}, and released in bulk while shutting down.
  *
  * @author chenguoqing
  * @author yutianbao
  */
 public class DistributedReentrantLock implements Lock {
+    private static final Logger LOGGER = LoggerFactory.getLogger(DistributedReentrantLock.class);
+
+    /**
+     * Max backoff(ms) & shift of the retry interval while the remote call is failing
+     */
+    private static final long MAX_RETRY_BACKOFF_MILLIS = 10000;
+    private static final int MAX_RETRY_BACKOFF_SHIFT = 10;
+
+    /**
+     * Spin only if the average hold time is shorter than the threshold, and spin no longer than the max time
+     */
+    private static final long SPIN_HOLD_THRESHOLD_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+    private static final long MAX_SPIN_NANOS = TimeUnit.MICROSECONDS.toNanos(100);
+
+    /**
+     * Field updaters for the CAS of the queue & lock state, no atomic wrapper is allocated
+     */
+    private static final AtomicReferenceFieldUpdater<DistributedReentrantLock, Node> HEAD =
+            AtomicReferenceFieldUpdater.newUpdater(DistributedReentrantLock.class, Node.class, "head");
+    private static final AtomicReferenceFieldUpdater<DistributedReentrantLock, Node> TAIL =
+            AtomicReferenceFieldUpdater.newUpdater(DistributedReentrantLock.class, Node.class, "tail");
+    private static final AtomicReferenceFieldUpdater<DistributedReentrantLock, Thread> OWNER =
+            AtomicReferenceFieldUpdater.newUpdater(DistributedReentrantLock.class, Thread.class,
+                    "exclusiveOwnerThread");
+    private static final AtomicReferenceFieldUpdater<DistributedReentrantLock, RetryLockThread> RETRY_THREAD =
+            AtomicReferenceFieldUpdater.newUpdater(DistributedReentrantLock.class, RetryLockThread.class,
+                    "retryLockThread");
+    private static final AtomicReferenceFieldUpdater<DistributedReentrantLock, ExpandLockLeaseThread> EXPAND_THREAD =
+            AtomicReferenceFieldUpdater.newUpdater(DistributedReentrantLock.class, ExpandLockLeaseThread.class,
+                    "expandLockThread");
+    private static final AtomicIntegerFieldUpdater<DistributedReentrantLock> REMOTE_HELD =
+            AtomicIntegerFieldUpdater.newUpdater(DistributedReentrantLock.class, "remoteHeld");
+    private static final AtomicIntegerFieldUpdater<LockThread> START_STATE =
+            AtomicIntegerFieldUpdater.newUpdater(LockThread.class, "startState");
+
+    /**
+     * Thread.onSpinWait() since Java 9, null if unavailable
+     */
+    private static final MethodHandle ON_SPIN_WAIT = resolveOnSpinWait();
 
     /**
      * Lock configuration
@@ -57,49 +137,114 @@ public class DistributedReentrantLock implements Lock {
      */
     private final DLockProcessor lockProcessor;
 
+    /**
+     * Locker of this instance for {@link DLockScope#PROCESS}, null for the thread scope
+     */
+    private final String instanceLocker;
+    private final byte[] instanceLockerBytes;
+
     /**
      * Head of the wait queue, lazily initialized. Except for initialization, it is modified only via method setHead.
      * Note: If head exists, its waitStatus is guaranteed not to be CANCELLED.
      */
-    private final AtomicReference<Node> head = new AtomicReference<>();
+    private volatile Node head;
     /**
      * Tail of the wait queue, lazily initialized. Modified only via method enq to add new wait node.
      */
-    private final AtomicReference<Node> tail = new AtomicReference<>();
+    private volatile Node tail;
 
     /**
      * The current owner of exclusive mode synchronization.
      */
-    private final AtomicReference<Thread> exclusiveOwnerThread = new AtomicReference<>();
+    private volatile Thread exclusiveOwnerThread;
     /**
      * Retry thread reference
      */
-    private final AtomicReference<RetryLockThread> retryLockRef = new AtomicReference<>();
+    private volatile RetryLockThread retryLockThread;
     /**
      * Expand lease thread reference
      */
-    private final AtomicReference<ExpandLockLeaseThread> expandLockRef = new AtomicReference<>();
+    private volatile ExpandLockLeaseThread expandLockThread;
 
     /**
      * Once a thread hold this lock, the thread can reentrant the lock.
-     * This value represents the count of holding this lock. Default as 0
+     * This value represents the count of holding this lock. Default as 0.
+     * It is written by the owner thread only.
+     */
+    private volatile int holdCount = 0;
+
+    /**
+     * Whether the remote lock is hold by current process(1 for held). For {@link DLockScope#PROCESS}, the remote lock
+     * may be retained without a local owner, waiting for the queued threads to take over.
+     */
+    private volatile int remoteHeld = 0;
+
+    /**
+     * The entity of the remote lock hold by current process, it is reused for lease expanding & unlocking
+     * with the cached script params.
+     */
+    private volatile DLockEntity heldLock;
+
+    /**
+     * Local deadline({@link System#nanoTime()}) of the remote lease, it is computed from the time before sending the
+     * lock or expand command, so that it never goes beyond the remote expiration.
+     */
+    private volatile long leaseDeadline;
+
+    /**
+     * Expire time(epoch ms) of the remote lock hold by the other one, observed by the last failed acquisition.
+     * 0 if unknown or consumed by the retry thread.
+     */
+    private volatile long observedExpireTime;
+
+    /**
+     * Acquired time of the current local hold, and the EWMA(alpha = 1/8) of the hold time, -1 if no history.
+     * Both are written by the owner thread only.
      */
-    private final AtomicInteger holdCount = new AtomicInteger(0);
+    private volatile long acquiredNanos;
+    private volatile long avgHoldNanos = -1;
+
+    /**
+     * Optional lock table shared by the processes on the host, and its slot held by this lock(guarded by hostSlotSync)
+     */
+    private volatile HostLockTable hostLockTable;
+    private HostLockTable.Slot hostSlot;
+    private final Object hostSlotSync = new Object();
+
+    /**
+     * Listeners for the lease lost
+     */
+    private final List<DLockLeaseListener> leaseListeners = new CopyOnWriteArrayList<>();
+
+    /**
+     * Count of the conditions created by {@link #newCondition()}
+     */
+    private final AtomicInteger conditionCount = new AtomicInteger(0);
+
+    /**
+     * Metrics of this lock
+     */
+    private final DLockMetrics metrics = new DLockMetrics();
 
     /**
      * CLH Queue Node for holds all parked thread
      */
     static class Node {
-        final AtomicReference<Node> prev = new AtomicReference<>();
-        final AtomicReference<Node> next = new AtomicReference<>();
+        volatile Node prev;
+        volatile Node next;
         final Thread t;
+        /**
+         * Ticket locker of the waiter for fair lock, null for the unfair lock
+         */
+        final byte[] ticketLocker;
 
         Node() {
-            this(null);
+            this(null, null);
         }
 
-        Node(Thread t) {
+        Node(Thread t, byte[] ticketLocker) {
             this.t = t;
+            this.ticketLocker = ticketLocker;
         }
     }
 
@@ -109,11 +254,122 @@ public class DistributedReentrantLock implements Lock {
     public DistributedReentrantLock(DLockConfig lockConfig, DLockProcessor lockProcessor) {
         this.lockConfig = lockConfig;
         this.lockProcessor = lockProcessor;
+
+        if (isProcessScope()) {
+            this.instanceLockerBytes = LockerUtils.newInstanceLockerBytes();
+            this.instanceLocker = LockerUtils.decodeLocker(instanceLockerBytes);
+        } else {
+            this.instanceLockerBytes = null;
+            this.instanceLocker = null;
+        }
     }
 
+    /**
+     * Returns a new distributed condition, which is named by the creation order of this lock instance. The nodes
+     * should create the conditions in the same order, or use {@link #newCondition(String)} instead.
+     */
     @Override
     public Condition newCondition() {
-        throw new UnsupportedOperationException();
+        return newCondition(Integer.toString(conditionCount.getAndIncrement()));
+    }
+
+    /**
+     * Returns the distributed condition with the name, see {@link DistributedCondition}
+     */
+    public Condition newCondition(String name) {
+        return new DistributedCondition(this, lockConfig, lockProcessor, name);
+    }
+
+    /**
+     * Fully release the lock hold by current thread for the condition waiting
+     *
+     * @return the saved hold count
+     */
+    int fullyRelease() {
+        if (!isHeldByCurrentThread()) {
+            throw new IllegalMonitorStateException();
+        }
+
+        int holds = holdCount;
+        holdCount = 1;
+        unlock();
+        return holds;
+    }
+
+    /**
+     * Re-acquire the lock with the saved hold count after the condition waiting
+     */
+    void reacquire(int holds) {
+        lock();
+        holdCount = holds;
+    }
+
+    /**
+     * Adopt the remote lock claimed by {@link DistributedLockClaim}. The lock is retained without local owner for
+     * {@link DLockScope#PROCESS}, and its lease is expanded by the claim.
+     */
+    void adoptClaimed(DLockEntity lock, long startNanos) {
+        this.heldLock = lock;
+        this.leaseDeadline = startNanos + TimeUnit.MILLISECONDS.toNanos(lockConfig.getMillisLease());
+        this.remoteHeld = 1;
+        DLockRegistry.register(this);
+        metrics.recordAcquired();
+    }
+
+    /**
+     * Record the lease expanded by {@link DistributedLockClaim}
+     */
+    void claimedLeaseExpanded(long startNanos) {
+        this.leaseDeadline = startNanos + TimeUnit.MILLISECONDS.toNanos(lockConfig.getMillisLease());
+        metrics.recordExpanded();
+    }
+
+    /**
+     * The entity of the remote lock hold by current process, null if it is not hold
+     */
+    DLockEntity getRemoteHeldLock() {
+        return remoteHeld == 1 ? heldLock : null;
+    }
+
+    /**
+     * Give up the remote lock for the bulk release of {@link DLockRegistry}, and stop the lease expanding. The lease
+     * is lost as {@link #leaseLost()}, the listeners are notified. The local owner keeps running, and its unlock makes
+     * no remote call.
+     *
+     * @return the entity of the remote lock to release, null if it is not hold or the lease is expired
+     */
+    DLockEntity detachForRelease() {
+        if (!REMOTE_HELD.compareAndSet(this, 1, 0)) {
+            return null;
+        }
+        boolean leaseValid = System.nanoTime() - leaseDeadline < 0;
+        DLockEntity currentLock = this.heldLock;
+        this.heldLock = null;
+
+        shutdownExpandThread();
+        notifyLeaseLost(exclusiveOwnerThread);
+        return leaseValid ? currentLock : null;
+    }
+
+    /**
+     * Set the lock table shared by the processes on the host, null to disable the host coordination
+     */
+    public void setHostLockTable(HostLockTable hostLockTable) {
+        this.hostLockTable = hostLockTable;
+    }
+
+    /**
+     * Lock configuration
+     */
+    DLockConfig getLockConfig() {
+        return lockConfig;
+    }
+
+    /**
+     * Lock processor
+     */
+    DLockProcessor getLockProcessor() {
+        return lockProcessor;
     }
 
     @Override
@@ -123,39 +379,46 @@ public class DistributedReentrantLock implements Lock {
 
     @Override
     public void lock() {
-        // lock db record
-        if (!tryLock()) {
-            acquireQueued(addWaiter());
+        // lock db record, the fair lock never barges the local queued threads
+        boolean mayAcquire = !lockConfig.isFair() || isHeldByCurrentThread() || !hasQueuedThreads();
+        byte[] ticketLocker = newTicketLocker();
+        if (!mayAcquire || tryAcquire(true, ticketLocker) != DLockAcquireResult.ACQUIRED) {
+            acquireQueued(addWaiter(ticketLocker));
         }
     }
 
     final void acquireQueued(final Node node) {
         for (;;) {
-            final Node p = node.prev.get();
-            if (p == head.get() && tryLock()) {
-                head.set(node);
-                p.next.set(null); // help GC
+            final Node p = node.prev;
+            if (p == head && tryAcquire(true, node.ticketLocker) == DLockAcquireResult.ACQUIRED) {
+                head = node;
+                p.next = null; // help GC
                 break;
             }
 
             // if need, start retry thread
-            if (exclusiveOwnerThread.get() == null) {
+            if (exclusiveOwnerThread == null) {
                 startRetryThread();
             }
 
+            // spin for the short hold, and retry once the owner released
+            if (p == head && spinForRelease()) {
+                continue;
+            }
+
             // park current thread
             LockSupport.park(this);
         }
     }
 
-    private Node addWaiter() {
-        Node node = new Node(Thread.currentThread());
+    private Node addWaiter(byte[] ticketLocker) {
+        Node node = new Node(Thread.currentThread(), ticketLocker);
         // Try the fast path of enq; backup to full enq on failure
-        Node pred = tail.get();
+        Node pred = tail;
         if (pred != null) {
-            node.prev.set(pred);
-            if (tail.compareAndSet(pred, node)) {
-                pred.next.set(node);
+            node.prev = pred;
+            if (TAIL.compareAndSet(this, pred, node)) {
+                pred.next = node;
                 return node;
             }
         }
@@ -165,19 +428,19 @@ public class DistributedReentrantLock implements Lock {
 
     private Node enq(final Node node) {
         for (;;) {
-            Node t = tail.get();
+            Node t = tail;
             if (t == null) { // Must initialize
                 Node h = new Node(); // Dummy header
-                h.next.set(node);
-                node.prev.set(h);
-                if (head.compareAndSet(null, h)) {
-                    tail.set(node);
+                h.next = node;
+                node.prev = h;
+                if (HEAD.compareAndSet(this, null, h)) {
+                    tail = node;
                     return h;
                 }
             } else {
-                node.prev.set(t);
-                if (tail.compareAndSet(t, node)) {
-                    t.next.set(node);
+                node.prev = t;
+                if (TAIL.compareAndSet(this, t, node)) {
+                    t.next = node;
                     return t;
                 }
             }
@@ -195,43 +458,108 @@ public class DistributedReentrantLock implements Lock {
      */
     @Override
     public boolean tryLock() {
+        return tryAcquire() == DLockAcquireResult.ACQUIRED;
+    }
+
+    /**
+     * Acquires the lock only if it is free at the time of invocation, same as {@link #tryLock()}. The failure result
+     * distinguishes the lock hold by the other one from the redis failures, so that the caller can fail fast
+     * while redis is unavailable(kind of the circuit is open).
+     *
+     * @return the acquire result
+     */
+    public DLockAcquireResult tryAcquire() {
+        return tryAcquire(false, newTicketLocker());
+    }
+
+    /**
+     * Acquire the lock, the queued waiter is registered in the remote queue by its ticket locker for fair lock
+     */
+    private DLockAcquireResult tryAcquire(boolean queued, byte[] ticketLocker) {
 
         // current thread can reentrant, and locked times add once
-        if (Thread.currentThread() == this.exclusiveOwnerThread.get()) {
-            this.holdCount.incrementAndGet();
-            return true;
+        if (Thread.currentThread() == this.exclusiveOwnerThread) {
+            this.holdCount++;
+            return DLockAcquireResult.ACQUIRED;
+        }
+
+        // take over the remote lock retained by the process, no remote call
+        if (isProcessScope() && remoteHeld == 1 && OWNER.compareAndSet(this, null, Thread.currentThread())) {
+            this.holdCount = 1;
+            this.acquiredNanos = System.nanoTime();
+            return DLockAcquireResult.ACQUIRED;
+        }
+
+        // the fair lock is held remotely by the local owner, no remote call
+        if (lockConfig.isFair() && exclusiveOwnerThread != null) {
+            return DLockAcquireResult.HELD_BY_OTHER;
+        }
+
+        // the other process on the host is competing for the key
+        if (!acquireHostSlot()) {
+            return DLockAcquireResult.HELD_BY_OTHER;
         }
 
         DLockEntity newLock = new DLockEntity();
         newLock.setLockTime(System.currentTimeMillis());
-        newLock.setLocker(generateLocker());
+        if (ticketLocker != null) {
+            generateTicketLocker(newLock, ticketLocker);
+        } else {
+            generateLocker(newLock);
+        }
         newLock.setLockStatus(DLockStatus.PROCESSING);
 
-        boolean locked = false;
+        DLockAcquireResult result;
+        long startNanos = System.nanoTime();
         try {
             // get lock directly
-            lockProcessor.updateForLock(newLock, lockConfig);
-            locked = true;
+            if (queued) {
+                lockProcessor.updateForQueuedLock(newLock, lockConfig);
+            } else {
+                lockProcessor.updateForLock(newLock, lockConfig);
+            }
+            result = DLockAcquireResult.ACQUIRED;
 
-        } catch (OptimisticLockingException | DLockProcessException e) {
-            // NOPE. Retry in the next round.
+        } catch (OptimisticLockingException e) {
+            // NOPE. Retry in the next round, after the observed lease of the holder.
+            DLockEntity currentLock = e.getCurrentLock();
+            if (currentLock != null && currentLock.getExpireTime() > 0) {
+                this.observedExpireTime = currentLock.getExpireTime();
+            }
+            result = DLockAcquireResult.HELD_BY_OTHER;
+
+        } catch (CircuitOpenException e) {
+            result = DLockAcquireResult.CIRCUIT_OPEN;
+
+        } catch (DLockProcessException e) {
+            result = DLockAcquireResult.PROCESS_ERROR;
         }
 
-        if (locked) {
+        if (result == DLockAcquireResult.ACQUIRED) {
             // set exclusive thread
-            this.exclusiveOwnerThread.set(Thread.currentThread());
+            this.exclusiveOwnerThread = Thread.currentThread();
+            this.heldLock = newLock;
+            this.leaseDeadline = startNanos + TimeUnit.MILLISECONDS.toNanos(lockConfig.getMillisLease());
+            this.remoteHeld = 1;
+            DLockRegistry.register(this);
+            metrics.recordAcquired();
 
             // locked times reset to one
-            this.holdCount.set(1);
+            this.holdCount = 1;
+            this.acquiredNanos = System.nanoTime();
 
             // shutdown retry thread
             shutdownRetryThread();
 
             // start the timer for expand lease time
             startExpandLockLeaseThread(newLock);
+
+        } else if (!queued && exclusiveOwnerThread == null && remoteHeld == 0 && !hasQueuedThreads()) {
+            // no local owner or waiter, give up competing on the host
+            releaseHostSlot();
         }
 
-        return locked;
+        return result;
     }
 
     /**
@@ -248,30 +576,64 @@ public class DistributedReentrantLock implements Lock {
     @Override
     public void unlock() throws IllegalMonitorStateException {
         // lock must be hold by current thread
-        if (Thread.currentThread() != this.exclusiveOwnerThread.get()) {
+        if (Thread.currentThread() != this.exclusiveOwnerThread) {
             throw new IllegalMonitorStateException();
         }
 
         // lock is still be hold
-        if (holdCount.decrementAndGet() > 0) {
+        if (--holdCount > 0) {
+            return;
+        }
+
+        // track the hold time for adaptive spinning
+        long holdNanos = System.nanoTime() - acquiredNanos;
+        long avg = avgHoldNanos;
+        avgHoldNanos = avg < 0 ? holdNanos : avg + ((holdNanos - avg) >> 3);
+
+        // retain the remote lock for the queued threads, the lease is still expanded by the expand thread.
+        // The fair lock is always released remotely, for the waiters on the other nodes.
+        if (isProcessScope() && !lockConfig.isFair() && hasQueuedThreads()) {
+            OWNER.compareAndSet(this, Thread.currentThread(), null);
+            unparkQueuedNode();
             return;
         }
 
-        // clear remote lock
-        DLockEntity currentLock = new DLockEntity();
-        currentLock.setLocker(generateLocker());
-        currentLock.setLockStatus(DLockStatus.PROCESSING);
+        // the retained remote lock can't be taken over any more
+        boolean leaseValid = REMOTE_HELD.getAndSet(this, 0) == 1 && System.nanoTime() - leaseDeadline < 0;
+        DLockRegistry.unregister(this);
+
+        // the locker of the held entity is the same as current
+        DLockEntity currentLock = this.heldLock;
+        this.heldLock = null;
 
         try {
-            // release remote lock
-            lockProcessor.updateForUnlock(currentLock, lockConfig);
+            if (leaseValid) {
+                if (currentLock == null) {
+                    currentLock = new DLockEntity();
+                    generateLocker(currentLock);
+                    currentLock.setLockStatus(DLockStatus.PROCESSING);
+                }
+
+                // release remote lock
+                metrics.recordRemoteUnlock();
+                lockProcessor.updateForUnlock(currentLock, lockConfig);
+
+            } else {
+                // the lease is lost or expired, the remote record is removed by the expire mechanism
+                metrics.recordExpiredHold();
+            }
 
         } catch (OptimisticLockingException | DLockProcessException e) {
             // NOPE. Lock will deleted automatic after the expire time.
 
         } finally {
             // Release exclusive owner
-            this.exclusiveOwnerThread.compareAndSet(Thread.currentThread(), null);
+            OWNER.compareAndSet(this, Thread.currentThread(), null);
+
+            // the queued threads keep competing on the host
+            if (!hasQueuedThreads()) {
+                releaseHostSlot();
+            }
 
             // Shutdown expand thread
             shutdownExpandThread();
@@ -281,22 +643,221 @@ public class DistributedReentrantLock implements Lock {
         }
     }
 
+    /**
+     * Spin while the running local owner is expected to release soon
+     *
+     * @return true if the owner is changed(released) while spinning
+     */
+    boolean spinForRelease() {
+        Thread owner = exclusiveOwnerThread;
+        long avg = avgHoldNanos;
+        if (owner == null || avg < 0 || avg > SPIN_HOLD_THRESHOLD_NANOS
+                || owner.getState() != Thread.State.RUNNABLE) {
+            return false;
+        }
+
+        long deadline = System.nanoTime() + Math.min(avg * 2, MAX_SPIN_NANOS);
+        while (exclusiveOwnerThread == owner) {
+            if (System.nanoTime() - deadline >= 0) {
+                return false;
+            }
+            onSpinWait();
+        }
+        return true;
+    }
+
+    private static void onSpinWait() {
+        if (ON_SPIN_WAIT != null) {
+            try {
+                ON_SPIN_WAIT.invokeExact();
+            } catch (Throwable e) {
+                // NOPE. Busy spin.
+            }
+        }
+    }
+
+    private static MethodHandle resolveOnSpinWait() {
+        try {
+            return MethodHandles.lookup().findStatic(Thread.class, "onSpinWait", MethodType.methodType(void.class));
+        } catch (NoSuchMethodException | IllegalAccessException e) {
+            return null;
+        }
+    }
+
     /**
      * wake up the head node for compete lock
      */
     private void unparkQueuedNode() {
         // wake up the head node for compete lock
-        Node h = head.get();
-        if (h != null && h.next.get() != null) {
-            LockSupport.unpark(h.next.get().t);
+        Node h = head;
+        Node next = h != null ? h.next : null;
+        if (next != null) {
+            LockSupport.unpark(next.t);
         }
     }
 
     /**
-     * Generate current locker. IP_Thread ID
+     * Queries if this lock is held by the current thread.
+     *
+     * @return true if current thread holds this lock
      */
-    private String generateLocker() {
-        return NetUtils.getLocalAddress() + "-" + Thread.currentThread().getId();
+    public boolean isHeldByCurrentThread() {
+        return Thread.currentThread() == this.exclusiveOwnerThread;
+    }
+
+    /**
+     * Queries if the remote lease is still valid according to the local deadline, no remote call.
+     *
+     * @return true if the remote lock is hold by current process and the lease is not expired
+     */
+    public boolean isHeldRemotely() {
+        return remoteHeld == 1 && System.nanoTime() - leaseDeadline < 0;
+    }
+
+    /**
+     * Check the lock is hold by current thread and the remote lease is still valid, no remote call.
+     * The long running critical section can check it periodically to abort quickly.
+     *
+     * @throws IllegalMonitorStateException if the current thread does not hold this lock
+     * @throws LeaseLostException if the remote lease is lost
+     */
+    public void checkValidity() throws IllegalMonitorStateException, LeaseLostException {
+        if (!isHeldByCurrentThread()) {
+            throw new IllegalMonitorStateException();
+        }
+
+        if (!isHeldRemotely()) {
+            throw new LeaseLostException("Lease lost for key:" + lockConfig.getLockUniqueKey());
+        }
+    }
+
+    /**
+     * Get the metrics of this lock
+     */
+    public DLockMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Add a listener for the lease lost
+     */
+    public void addLeaseListener(DLockLeaseListener listener) {
+        leaseListeners.add(listener);
+    }
+
+    /**
+     * Remove the listener for the lease lost
+     */
+    public void removeLeaseListener(DLockLeaseListener listener) {
+        leaseListeners.remove(listener);
+    }
+
+    /**
+     * Mark the remote lease lost and notify the listeners, only once for each acquisition
+     */
+    void leaseLost() {
+        if (!REMOTE_HELD.compareAndSet(this, 1, 0)) {
+            return;
+        }
+
+        Thread owner = exclusiveOwnerThread;
+        LOGGER.warn("Lease lost for key:{}, owner={}", lockConfig.getLockUniqueKey(), owner);
+        notifyLeaseLost(owner);
+    }
+
+    /**
+     * Unregister the lock whose remote lease is lost, record it and notify the listeners
+     */
+    private void notifyLeaseLost(Thread owner) {
+        DLockRegistry.unregister(this);
+        metrics.recordLeaseLost();
+
+        for (DLockLeaseListener listener : leaseListeners) {
+            try {
+                listener.onLeaseLost(lockConfig, owner);
+            } catch (RuntimeException e) {
+                LOGGER.warn("Exception occurred by lease listener for key:" + lockConfig.getLockUniqueKey(), e);
+            }
+        }
+    }
+
+    /**
+     * Hold the host slot of the key if the host lock table is set
+     *
+     * @return false if the other process on the host is competing for the key
+     */
+    private boolean acquireHostSlot() {
+        HostLockTable table = hostLockTable;
+        if (table == null) {
+            return true;
+        }
+
+        synchronized (hostSlotSync) {
+            if (hostSlot == null) {
+                hostSlot = table.tryAcquire(lockConfig.getLockUniqueKey());
+            }
+            return hostSlot != null;
+        }
+    }
+
+    /**
+     * Release the host slot held by this lock
+     */
+    private void releaseHostSlot() {
+        if (hostLockTable == null) {
+            return;
+        }
+
+        synchronized (hostSlotSync) {
+            if (hostSlot != null) {
+                hostSlot.release();
+                hostSlot = null;
+            }
+        }
+    }
+
+    /**
+     * Whether any thread is waiting in the CLH queue
+     */
+    private boolean hasQueuedThreads() {
+        Node h = head;
+        return h != null && h.next != null;
+    }
+
+    private boolean isProcessScope() {
+        return lockConfig.getLockScope() == DLockScope.PROCESS;
+    }
+
+    /**
+     * Generate current locker. InstanceID + ThreadID for thread scope, the locker of this instance for process scope.
+     * The binary locker is generated too for compact encoding.
+     */
+    private void generateLocker(DLockEntity lock) {
+        boolean instanceScope = instanceLocker != null;
+        lock.setLocker(instanceScope ? instanceLocker : LockerUtils.getThreadLocker());
+
+        if (lockConfig.getEncoding() == DLockEncoding.COMPACT) {
+            lock.setLockerBytes(instanceScope ? instanceLockerBytes : LockerUtils.getThreadLockerBytes());
+        }
+    }
+
+    /**
+     * Generate a new ticket locker for the waiter of fair lock, null for the unfair lock. The ticket locker is
+     * unique among the waiters of the process, the handed over lock is recognized by it.
+     */
+    private byte[] newTicketLocker() {
+        return lockConfig.isFair() ? LockerUtils.newInstanceLockerBytes() : null;
+    }
+
+    /**
+     * Generate the locker from the ticket locker of fair lock
+     */
+    private void generateTicketLocker(DLockEntity lock, byte[] ticketLocker) {
+        lock.setLocker(LockerUtils.decodeLocker(ticketLocker));
+
+        if (lockConfig.getEncoding() == DLockEncoding.COMPACT) {
+            lock.setLockerBytes(ticketLocker);
+        }
     }
 
     /**
@@ -316,7 +877,7 @@ public class DistributedReentrantLock implements Lock {
          */
         final int retryInterval;
 
-        final AtomicInteger startState = new AtomicInteger(0);
+        volatile int startState = 0;
         /**
          * Control variable for shutdown
          */
@@ -348,7 +909,7 @@ public class DistributedReentrantLock implements Lock {
                         execute();
 
                         // wait for interval
-                        sync.wait(retryInterval);
+                        sync.wait(nextInterval());
 
                     } catch (InterruptedException e) {
                         shouldShutdown = true;
@@ -362,6 +923,13 @@ public class DistributedReentrantLock implements Lock {
 
         abstract void execute() throws InterruptedException;
 
+        /**
+         * Interval(ms) before the next execution
+         */
+        long nextInterval() {
+            return retryInterval;
+        }
+
         void beforeShutdown() {
         }
     }
@@ -380,82 +948,180 @@ public class DistributedReentrantLock implements Lock {
 
         @Override
         void execute() throws InterruptedException {
+            long startNanos = System.nanoTime();
             try {
                 // set lock time
                 lock.setLockTime(System.currentTimeMillis());
 
                 // update lock
                 lockProcessor.expandLockExpire(lock, lockConfig);
+                leaseDeadline = startNanos + TimeUnit.MILLISECONDS.toNanos(lockConfig.getMillisLease());
+                metrics.recordExpanded();
 
             } catch (OptimisticLockingException e) {
+                // the remote lock is released or hold by the other one
+                leaseLost();
+
                 // if lock has been released, kill current thread
                 throw new InterruptedException("Lock released.");
 
             } catch (DLockProcessException e) {
-                // retry
+                // retry until the lease is expired
+                if (System.nanoTime() - leaseDeadline >= 0) {
+                    leaseLost();
+                    throw new InterruptedException("Lease expired.");
+                }
             }
         }
 
         @Override
         void beforeShutdown() {
-            expandLockRef.compareAndSet(this, null);
+            EXPAND_THREAD.compareAndSet(DistributedReentrantLock.this, this, null);
         }
     }
 
     private void startExpandLockLeaseThread(DLockEntity lock) {
-        ExpandLockLeaseThread t = expandLockRef.get();
+        ExpandLockLeaseThread t = expandLockThread;
 
         while (t == null || t.getState() == Thread.State.TERMINATED) {
-            // set new expand lock thread
-            int retryInterval = (int) (lockConfig.getMillisLease() * 0.75);
-            expandLockRef.compareAndSet(t, new ExpandLockLeaseThread(lock, 1, retryInterval));
+            // set new expand lock thread, the first renewal is deferred for a fraction of the lease
+            int renewInterval = (int) Math.min(Integer.MAX_VALUE, lockConfig.getMillisRenewInterval());
+            EXPAND_THREAD.compareAndSet(this, t, new ExpandLockLeaseThread(lock, renewInterval, renewInterval));
 
             // retrieve the new expand thread instance
-            t = expandLockRef.get();
+            t = expandLockThread;
         }
 
-        if (t.startState.compareAndSet(0, 1)) {
+        if (START_STATE.compareAndSet(t, 0, 1)) {
             t.start();
         }
     }
 
     private void shutdownExpandThread() {
-        ExpandLockLeaseThread t = expandLockRef.get();
-        if (t != null && t.isAlive()) {
-            t.interrupt();
+        ExpandLockLeaseThread t = expandLockThread;
+        if (t != null) {
+            // detach it at once, the next acquisition never reuses the thread which is shutting down
+            EXPAND_THREAD.compareAndSet(this, t, null);
+            if (t.isAlive()) {
+                t.interrupt();
+            }
         }
     }
 
     /**
      * Start when: (1) no threads hold lock; (2) CLH has waiting thread(s). And shutdown when one thread
-     * posses the lock, because it does not has necessary to start retry thread.
+     * posses the lock, because it does not has necessary to start retry thread.<p>
+     *
+     * The head node is not waked up while the remote call is failed, and the interval is backed off exponentially
+     * with jitter, so that the failing redis is not hit by a retry storm.<p>
+     *
+     * The next retry is scheduled just after the remaining lease of the holder with jitter, so that the nodes don't
+     * compete at the same instant. The head node is also waked up by the release signal at once if it is supported,
+     * and the retry interval is relaxed to the lease as the fallback for the missed signals.
      */
     private class RetryLockThread extends LockThread {
 
+        /**
+         * Consecutive failures of the remote call
+         */
+        private int failures = 0;
+
+        /**
+         * Interval(ms) by the remaining lease, 0 if the lock is free
+         */
+        private long leaseInterval = 0;
+
+        /**
+         * Whether the release signal is subscribed, it is armed from the second round. The release before the
+         * subscription is confirmed is detected by the remote check & the short interval of the first round.
+         */
+        private boolean subscribed = false;
+        private boolean releaseSignal = false;
+        private boolean signalArmed = false;
+
+        /**
+         * Wake up the head node once the lock is released by the other node
+         */
+        private final Runnable releaseListener = DistributedReentrantLock.this::unparkQueuedNode;
+
         RetryLockThread(int delay, int retryInterval) {
             super("RetryLockThread", delay, retryInterval);
         }
 
+        @Override
+        long nextInterval() {
+            if (failures == 0) {
+                if (leaseInterval <= 0) {
+                    return retryInterval;
+                }
+
+                // retry just after the lease is expired, with jitter: [1, retryInterval/4]
+                long maxInterval = signalArmed ? Math.max(lockConfig.getMillisLease(), retryInterval) : retryInterval;
+                long jitter = 1 + ThreadLocalRandom.current().nextLong(Math.max(retryInterval / 4, 1));
+                return Math.min(leaseInterval + jitter, Math.max(maxInterval, 1));
+            }
+
+            // exponential backoff with equal jitter: [backoff/2, backoff]
+            long backoff = (long) Math.max(retryInterval, 1) << Math.min(failures, MAX_RETRY_BACKOFF_SHIFT);
+            backoff = Math.max(Math.min(backoff, MAX_RETRY_BACKOFF_MILLIS), retryInterval);
+            return Math.max(1, backoff / 2 + ThreadLocalRandom.current().nextLong(backoff / 2 + 1));
+        }
+
         @Override
         void execute() throws InterruptedException {
 
             // if existing running thread, kill self
-            if (exclusiveOwnerThread.get() != null) {
+            if (exclusiveOwnerThread != null && detachForExit()) {
                 throw new InterruptedException("Has running thread.");
             }
 
-            Node h = head.get();
+            Node h = head;
 
             // no thread for lock, kill self
-            if (h == null) {
+            if (h == null && detachForExit()) {
+                releaseHostSlot();
                 throw new InterruptedException("No waiting thread.");
             }
 
+            // the other process on the host is competing, wait for its release locally
+            if (!acquireHostSlot()) {
+                leaseInterval = 0;
+                failures = 0;
+                return;
+            }
+
+            // the head node of fair lock competes periodically, to refresh its ticket & detect the handover
+            if (lockConfig.isFair()) {
+                unparkQueuedNode();
+                return;
+            }
+
+            if (!subscribed) {
+                subscribed = true;
+                releaseSignal = lockProcessor.subscribeRelease(lockConfig, releaseListener);
+                observedExpireTime = 0;
+            } else {
+                signalArmed = releaseSignal;
+            }
+
+            // the remaining lease is observed by the last failed acquisition, no remote call
+            long observed = observedExpireTime;
+            observedExpireTime = 0;
+            long remaining = observed - System.currentTimeMillis();
+            if (observed > 0 && remaining > 0) {
+                leaseInterval = remaining;
+                failures = 0;
+                return;
+            }
+
             boolean needRetry = false;
             try {
-                needRetry = lockProcessor.isLockFree(lockConfig.getLockUniqueKey());
+                leaseInterval = lockProcessor.getRemainingLease(lockConfig);
+                needRetry = leaseInterval <= 0;
+                failures = 0;
             } catch (DLockProcessException e) {
-                needRetry = true;
+                // back off, the lock will be competed after the remote call recovered
+                failures++;
             }
 
             // if the lock has been releases or expired, re-competition  
@@ -465,9 +1131,24 @@ public class DistributedReentrantLock implements Lock {
             }
         }
 
+        /**
+         * Detach this thread before exiting, so that the new waiter starts a new retry thread. It is re-attached if
+         * a waiter is queued without local owner meanwhile, since the waiter may have seen this thread alive.
+         *
+         * @return true if this thread should exit
+         */
+        private boolean detachForExit() {
+            RETRY_THREAD.compareAndSet(DistributedReentrantLock.this, this, null);
+            return exclusiveOwnerThread != null || !hasQueuedThreads()
+                    || !RETRY_THREAD.compareAndSet(DistributedReentrantLock.this, null, this);
+        }
+
         @Override
         void beforeShutdown() {
-            retryLockRef.compareAndSet(this, null);
+            if (releaseSignal) {
+                lockProcessor.unsubscribeRelease(lockConfig, releaseListener);
+            }
+            RETRY_THREAD.compareAndSet(DistributedReentrantLock.this, this, null);
         }
     }
 
@@ -475,16 +1156,16 @@ public class DistributedReentrantLock implements Lock {
      * Start the retry thread
      */
     private void startRetryThread() {
-        RetryLockThread t = retryLockRef.get();
+        RetryLockThread t = retryLockThread;
 
         while (t == null || t.getState() == Thread.State.TERMINATED) {
-            retryLockRef.compareAndSet(t, new RetryLockThread((int) (lockConfig.getMillisLease() / 10),
+            RETRY_THREAD.compareAndSet(this, t, new RetryLockThread((int) (lockConfig.getMillisLease() / 10),
                     (int) (lockConfig.getMillisLease() / 6)));
 
-            t = retryLockRef.get();
+            t = retryLockThread;
         }
 
-        if (t.startState.compareAndSet(0, 1)) {
+        if (START_STATE.compareAndSet(t, 0, 1)) {
             t.start();
         }
     }
@@ -493,7 +1174,7 @@ public class DistributedReentrantLock implements Lock {
      * Shutdown retry thread
      */
     private void shutdownRetryThread() {
-        RetryLockThread t = retryLockRef.get();
+        RetryLockThread t = retryLockThread;
         if (t != null && t.isAlive()) {
             t.interrupt();
         }
@@ -0,0 +1,146 @@
+/*
+ * Copyright (c) 2017 Baidu, Inc. All Rights Reserve.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.baidu.fsg.dlock;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+
+import com.baidu.fsg.dlock.domain.DLockConfig;
+import com.baidu.fsg.dlock.processor.DLockProcessor;
+import com.baidu.fsg.dlock.support.HostLockTable;
+
+/**
+ * DistributedSingleFlight coalesces the identical locked work of the same lock key within the process.<p>
+ *
+ * The first caller of a key becomes the leader, it takes the {@link DistributedReentrantLock} and runs the work. The
+ * following callers of the same key don't compete for the lock, but wait for the leader and share its result(or
+ * exception). Once the work is done, the next caller starts a new flight. So that the hot key is computed once for
+ * the concurrent callers, and sends the lock commands once.<p>
+ *
+ * The callers of the same key should compute the same type of result. The reentrant call of the leader runs the work
+ * directly.
+ *
+ * @author yutianbao
+ */
+public class DistributedSingleFlight {
+
+    /**
+     * Lock processor
+     */
+    private final DLockProcessor lockProcessor;
+    /**
+     * Lock table shared by the processes on the host, optional
+     */
+    private volatile HostLockTable hostLockTable;
+
+    /**
+     * The flights in progress, keyed by lock unique key
+     */
+    private final ConcurrentMap<String, Flight> flights = new ConcurrentHashMap<>();
+
+    /**
+     * The flight of one lock key, completed by the leader
+     */
+    private static class Flight extends CompletableFuture<Object> {
+        final Thread leader = Thread.currentThread();
+    }
+
+    /**
+     * Constructor with lock processor
+     */
+    public DistributedSingleFlight(DLockProcessor lockProcessor) {
+        this.lockProcessor = lockProcessor;
+    }
+
+    /**
+     * Set the lock table shared by the processes on the host, null to disable the host coordination. It is applied
+     * to the locks of the flights started afterwards.
+     */
+    public void setHostLockTable(HostLockTable hostLockTable) {
+        this.hostLockTable = hostLockTable;
+    }
+
+    /**
+     * Run the work with the lock once for the concurrent callers of the same key
+     *
+     * @param lockConfig
+     * @param work
+     * @return the result of the work, shared by the callers of the flight
+     * @throws Exception the exception of the work, or {@link InterruptedException} while waiting for the leader
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T executeOnce(DLockConfig lockConfig, Callable<T> work) throws Exception {
+        String key = lockConfig.getLockUniqueKey();
+        Flight flight = new Flight();
+        Flight existing = flights.putIfAbsent(key, flight);
+
+        if (existing != null) {
+            // reentrant call of the leader
+            if (existing.leader == Thread.currentThread()) {
+                return work.call();
+            }
+            return (T) await(existing);
+        }
+
+        try {
+            DistributedReentrantLock lock = new DistributedReentrantLock(lockConfig, lockProcessor);
+            lock.setHostLockTable(hostLockTable);
+            lock.lock();
+            try {
+                T result = work.call();
+                flight.complete(result);
+                return result;
+            } finally {
+                lock.unlock();
+            }
+
+        } catch (Throwable e) {
+            flight.completeExceptionally(e);
+            throw e;
+
+        } finally {
+            flights.remove(key, flight);
+        }
+    }
+
+    /**
+     * Count of the flights in progress
+     */
+    public int getFlightCount() {
+        return flights.size();
+    }
+
+    /**
+     * Wait for the result of the leader, and rethrow its exception
+     */
+    private static Object await(Flight flight) throws Exception {
+        try {
+            return flight.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof Exception) {
+                throw (Exception) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw e;
+        }
+    }
+}
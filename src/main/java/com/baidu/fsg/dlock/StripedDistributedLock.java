@@ -0,0 +1,317 @@
+/*
+ * Copyright (c) 2017 Baidu, Inc. All Rights Reserve.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.baidu.fsg.dlock;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.springframework.util.Assert;
+
+import com.baidu.fsg.dlock.domain.DLockConfig;
+import com.baidu.fsg.dlock.processor.DLockProcessor;
+import com.baidu.fsg.dlock.support.HostLockTable;
+
+/**
+ * StripedDistributedLock maps the arbitrary lock targets of one lock type onto a fixed number of local stripes,
+ * it is designed for the fine-grained locks with high key cardinality(kind of per user id lock).<p>
+ *
+ * Each stripe owns a local lock guarding the bookkeeping of the remote locks in use, the lock is only held while
+ * looking up or discarding the remote lock, never while competing for it, so that the targets mapping to the same
+ * stripe don't block each other. The remote lock is exact per target (the same unique key as
+ * {@link DistributedReentrantLock}), the local competitors of one target are queued in the CLH queue of its remote lock,
+ * and only the queue head competes remotely. The remote lock instance is created at the first locking and discarded
+ * once no thread uses it, so that the local memory is bounded by the targets in use rather than all the targets.<p>
+ *
+ * The acquired count & waiting count of each stripe are exposed for the hot stripes detection.
+ *
+ * @author yutianbao
+ */
+public class StripedDistributedLock {
+
+    /**
+     * Max stripe count
+     */
+    private static final int MAX_STRIPES = 1 << 16;
+
+    /**
+     * Lock type
+     */
+    private final String lockType;
+    /**
+     * Lock lease duration
+     */
+    private final int lease;
+    /**
+     * Lock lease time unit
+     */
+    private final TimeUnit leaseTimeUnit;
+    /**
+     * Lock processor
+     */
+    private final DLockProcessor lockProcessor;
+    /**
+     * Lock table shared by the processes on the host, optional
+     */
+    private volatile HostLockTable hostLockTable;
+
+    /**
+     * Local stripes, the length is power of two
+     */
+    private final Stripe[] stripes;
+
+    /**
+     * Local stripe, holds the remote locks in use of the targets mapping to this stripe
+     */
+    static class Stripe {
+        /**
+         * Local lock guarding the remote locks bookkeeping
+         */
+        final ReentrantLock localLock = new ReentrantLock();
+        /**
+         * Remote locks in use, keyed by lock target. Only accessed by the owner of local lock.
+         */
+        final Map<String, RemoteLockRef> remoteLocks = new HashMap<>(4);
+        /**
+         * Acquired count of this stripe
+         */
+        final LongAdder acquiredCount = new LongAdder();
+        /**
+         * Count of the threads waiting for the remote locks of this stripe
+         */
+        final AtomicInteger waitingCount = new AtomicInteger();
+    }
+
+    /**
+     * Remote lock with the count of threads using it, guarded by the local lock of stripe
+     */
+    static class RemoteLockRef {
+        final DistributedReentrantLock remoteLock;
+        int refCount;
+
+        RemoteLockRef(DistributedReentrantLock remoteLock) {
+            this.remoteLock = remoteLock;
+        }
+    }
+
+    /**
+     * Constructor with lock type, lease, stripe count and lock processor. The stripe count is rounded up to power of
+     * two.
+     */
+    public StripedDistributedLock(String lockType, int lease, TimeUnit leaseTimeUnit, int stripeCount,
+            DLockProcessor lockProcessor) {
+        Assert.isTrue(stripeCount > 0 && stripeCount <= MAX_STRIPES, "stripeCount must be in (0, " + MAX_STRIPES + "]");
+
+        this.lockType = lockType;
+        this.lease = lease;
+        this.leaseTimeUnit = leaseTimeUnit;
+        this.lockProcessor = lockProcessor;
+
+        int size = 1;
+        while (size < stripeCount) {
+            size <<= 1;
+        }
+        this.stripes = new Stripe[size];
+        for (int i = 0; i < size; i++) {
+            stripes[i] = new Stripe();
+        }
+    }
+
+    /**
+     * Set the lock table shared by the processes on the host, null to disable the host coordination. It is applied
+     * to the remote locks created afterwards.
+     */
+    public void setHostLockTable(HostLockTable hostLockTable) {
+        this.hostLockTable = hostLockTable;
+    }
+
+    /**
+     * Get the lock of the lock target, the lock is a lightweight handle which can be discarded after use.
+     *
+     * @param lockTarget
+     * @return
+     */
+    public Lock get(String lockTarget) {
+        return new StripedLock(stripes[stripeOf(lockTarget)], lockTarget);
+    }
+
+    /**
+     * Get the stripe index of the lock target
+     *
+     * @param lockTarget
+     * @return
+     */
+    public int stripeOf(String lockTarget) {
+        int h = lockTarget == null ? 0 : lockTarget.hashCode();
+        return (h ^ (h >>> 16)) & (stripes.length - 1);
+    }
+
+    /**
+     * Get the stripe count
+     */
+    public int getStripeCount() {
+        return stripes.length;
+    }
+
+    /**
+     * Get the acquired count of the stripe
+     */
+    public long getAcquiredCount(int stripe) {
+        return stripes[stripe].acquiredCount.sum();
+    }
+
+    /**
+     * Get the estimated count of local threads waiting for the lock targets of the stripe
+     */
+    public int getQueueLength(int stripe) {
+        return stripes[stripe].waitingCount.get();
+    }
+
+    /**
+     * The lock handle of one lock target
+     */
+    private class StripedLock implements Lock {
+
+        final Stripe stripe;
+        final String lockTarget;
+
+        StripedLock(Stripe stripe, String lockTarget) {
+            this.stripe = stripe;
+            this.lockTarget = lockTarget;
+        }
+
+        @Override
+        public void lock() {
+            DistributedReentrantLock remoteLock = retainRemoteLock();
+
+            boolean locked = false;
+            stripe.waitingCount.incrementAndGet();
+            try {
+                remoteLock.lock();
+                locked = true;
+            } finally {
+                stripe.waitingCount.decrementAndGet();
+                if (!locked) {
+                    releaseRemoteLock();
+                }
+            }
+            stripe.acquiredCount.increment();
+        }
+
+        @Override
+        public boolean tryLock() {
+            DistributedReentrantLock remoteLock = retainRemoteLock();
+
+            boolean locked = false;
+            try {
+                locked = remoteLock.tryLock();
+            } finally {
+                if (!locked) {
+                    releaseRemoteLock();
+                }
+            }
+
+            if (locked) {
+                stripe.acquiredCount.increment();
+            }
+            return locked;
+        }
+
+        @Override
+        public void unlock() {
+            // lock must be hold by current thread
+            DistributedReentrantLock remoteLock = getRemoteLock();
+            if (remoteLock == null || !remoteLock.isHeldByCurrentThread()) {
+                throw new IllegalMonitorStateException();
+            }
+
+            try {
+                remoteLock.unlock();
+            } finally {
+                releaseRemoteLock();
+            }
+        }
+
+        @Override
+        public void lockInterruptibly() throws InterruptedException {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public boolean tryLock(long time, TimeUnit unit) throws InterruptedException {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Condition newCondition() {
+            throw new UnsupportedOperationException();
+        }
+
+        /**
+         * Get or create the remote lock of the target, and count the current thread as its user
+         */
+        private DistributedReentrantLock retainRemoteLock() {
+            stripe.localLock.lock();
+            try {
+                RemoteLockRef ref = stripe.remoteLocks.get(lockTarget);
+                if (ref == null) {
+                    DLockConfig lockConfig = new DLockConfig(lockType, lockTarget, lease, leaseTimeUnit);
+                    DistributedReentrantLock remoteLock = new DistributedReentrantLock(lockConfig, lockProcessor);
+                    remoteLock.setHostLockTable(hostLockTable);
+                    ref = new RemoteLockRef(remoteLock);
+                    stripe.remoteLocks.put(lockTarget, ref);
+                }
+                ref.refCount++;
+                return ref.remoteLock;
+            } finally {
+                stripe.localLock.unlock();
+            }
+        }
+
+        /**
+         * Get the remote lock in use of the target
+         */
+        private DistributedReentrantLock getRemoteLock() {
+            stripe.localLock.lock();
+            try {
+                RemoteLockRef ref = stripe.remoteLocks.get(lockTarget);
+                return ref == null ? null : ref.remoteLock;
+            } finally {
+                stripe.localLock.unlock();
+            }
+        }
+
+        /**
+         * Uncount the current thread as the user of remote lock, and discard the remote lock if not used any more
+         */
+        private void releaseRemoteLock() {
+            stripe.localLock.lock();
+            try {
+                RemoteLockRef ref = stripe.remoteLocks.get(lockTarget);
+                if (ref != null && --ref.refCount == 0) {
+                    stripe.remoteLocks.remove(lockTarget);
+                }
+            } finally {
+                stripe.localLock.unlock();
+            }
+        }
+    }
+}
@@ -0,0 +1,59 @@
+/*
+ * Copyright (c) 2017 Baidu, Inc. All Rights Reserve.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.baidu.fsg.dlock.annotation;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+import com.baidu.fsg.dlock.domain.DLockType;
+
+/**
+ * DistributedLocked marks a method to be executed with the distributed lock held, the lock target is evaluated from
+ * the SpEL key with method arguments. Sample as below:<p>
+ *
+ * <code>@DistributedLocked(type = DLockType.CUSTOMER_LOCK, key = "#order.customerId")</code><br>
+ * <code>public void pay(Order order) {...}</code><p>
+ *
+ * The arguments can be referenced by name(compiled with debug info or -parameters), or by index: #p0, #a0.
+ * It is processed by {@link com.baidu.fsg.dlock.support.DistributedLockedAspect}, and the AspectJ auto proxy must be
+ * enabled(kind of &lt;aop:aspectj-autoproxy/&gt;).
+ *
+ * @author yutianbao
+ */
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.METHOD)
+public @interface DistributedLocked {
+
+    /**
+     * Lock type
+     */
+    DLockType type();
+
+    /**
+     * SpEL expression of the lock target
+     */
+    String key();
+
+    /**
+     * Lease time(ms), the lease configured in config-dlock.properties is used if not positive
+     */
+    int lease() default -1;
+
+}
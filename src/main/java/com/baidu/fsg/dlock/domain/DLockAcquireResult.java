@@ -0,0 +1,52 @@
+/*
+ * Copyright (c) 2017 Baidu, Inc. All Rights Reserve.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.baidu.fsg.dlock.domain;
+
+import com.baidu.fsg.dlock.utils.ValuedEnum;
+
+/**
+ * Result of a lock acquiring attempt, the failures are distinguished for fast failing
+ *
+ * @author yutianbao
+ */
+public enum DLockAcquireResult implements ValuedEnum<Integer> {
+
+    /** The lock is acquired(or reentered) */
+    ACQUIRED(0),
+    /** The lock is hold by the other one */
+    HELD_BY_OTHER(1),
+    /** The remote call is failed */
+    PROCESS_ERROR(2),
+    /** The remote call is rejected by the open circuit breaker */
+    CIRCUIT_OPEN(3);
+
+    /**
+     * Result code
+     */
+    private final int result;
+
+    /**
+     * Constructor with field of result
+     */
+    DLockAcquireResult(int result) {
+        this.result = result;
+    }
+
+    @Override
+    public Integer value() {
+        return result;
+    }
+}
@@ -16,6 +16,9 @@
 package com.baidu.fsg.dlock.domain;
 
 import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
 import java.util.concurrent.TimeUnit;
 
 import org.apache.commons.lang.StringUtils;
@@ -32,7 +35,14 @@ import org.apache.commons.lang.builder.ToStringStyle;
  * LockType: USER_LOCK, LockTartget: 2356783, Lease: 500<p>
  *
  * LockType: BATCH_PROCESS_LOCK, LockTartget: MAP_NODE, Lease: 300<br>
- * LockType: BATCH_PROCESS_LOCK, LockTartget: REDUCE_NODE, Lease: 400
+ * LockType: BATCH_PROCESS_LOCK, LockTartget: REDUCE_NODE, Lease: 400<p>
+ *
+ * With the {@link DLockEncoding#COMPACT} encoding, the remote key is binary as below:<br>
+ * <code>0xFE | 0x01 TypeID(4 bytes) or 0x02 LockType(UTF-8) 0x00 | 0x01 Target(8 bytes) or 0x02 Target(UTF-8)</code>
+ * <br>The TypeID is the {@link DLockType#value()} of the lock type, and the numeric target is encoded as long.<p>
+ *
+ * The auxiliary keys of a lock(kind of the waiter queue of fair lock) are derived from the encoded unique key with
+ * the suffix: $LockUniqueKey:$Suffix
  * 
  * @author yutianbao
  */
@@ -45,6 +55,14 @@ public class DLockConfig implements Serializable {
     /** Separator for unique key generating */
     public static final String UK_SP = "_";
 
+    /** Separator for the derived keys(kind of the fair queue) */
+    public static final String DERIVED_KEY_SP = ":";
+
+    /** Prefix & tags for compact unique key generating, the prefix is never a leading byte of UTF-8 text */
+    private static final byte COMPACT_UK_PRE = (byte) 0xFE;
+    private static final byte COMPACT_TAG_NUMERIC = 0x01;
+    private static final byte COMPACT_TAG_TEXT = 0x02;
+
     /**
      * Lock type represents a group lockTargets with the same type.  
      * The type is divided by different business scenarios, kind of USER_LOCK, ORDER_LOCK, BATCH_PROCCESS_LOCK...
@@ -72,6 +90,38 @@ public class DLockConfig implements Serializable {
      */
     private final TimeUnit leaseTimeUnit;
 
+    /**
+     * Lease duration of millis unit, its decimal bytes are used as the redis command argument
+     */
+    private final long millisLease;
+    private final byte[] millisLeaseBytes;
+
+    /**
+     * Ownership scope of the remote lock, default as {@link DLockScope#THREAD}
+     */
+    private DLockScope lockScope = DLockScope.THREAD;
+
+    /**
+     * Encoding of the remote lock record, default as {@link DLockEncoding#TEXT}
+     */
+    private DLockEncoding encoding = DLockEncoding.TEXT;
+
+    /**
+     * Pre-encoded bytes of the remote lock key in the current encoding
+     */
+    private byte[] lockUniqueKeyBytes;
+
+    /**
+     * Whether the lock is fair across nodes, default as false(unfair, for high throughput)
+     */
+    private boolean fair = false;
+
+    /**
+     * Fraction of the lease elapsed before each renewal, in (0, 1). Default as 0.75, so that the critical sections
+     * shorter than 3/4 lease never renew.
+     */
+    private double leaseRenewRatio = 0.75;
+
     /**
      * Constructor with lockType & lockTarget & leaseTime & leaseTimeUnit
      */
@@ -81,6 +131,9 @@ public class DLockConfig implements Serializable {
         this.lockUniqueKey = UK_PRE + UK_SP + lockType + UK_SP + StringUtils.trimToEmpty(lockTarget);
         this.lease = lease;
         this.leaseTimeUnit = leaseTimeUnit;
+        this.millisLease = leaseTimeUnit.toMillis(lease);
+        this.millisLeaseBytes = Long.toString(millisLease).getBytes(StandardCharsets.UTF_8);
+        this.lockUniqueKeyBytes = lockUniqueKey.getBytes(StandardCharsets.UTF_8);
     }
 
     /**
@@ -105,14 +158,140 @@ public class DLockConfig implements Serializable {
     public String getLockUniqueKey() {
         return lockUniqueKey;
     }
+
+    public DLockScope getLockScope() {
+        return lockScope;
+    }
+
+    public DLockEncoding getEncoding() {
+        return encoding;
+    }
+
+    public boolean isFair() {
+        return fair;
+    }
+
+    public double getLeaseRenewRatio() {
+        return leaseRenewRatio;
+    }
+
+    /**
+     * Get the pre-encoded bytes of the remote lock key, don't modify it
+     */
+    public byte[] getLockUniqueKeyBytes() {
+        return lockUniqueKeyBytes;
+    }
+
+    /**
+     * Setters
+     */
+    public void setLockScope(DLockScope lockScope) {
+        this.lockScope = lockScope;
+    }
+
+    public void setFair(boolean fair) {
+        this.fair = fair;
+    }
+
+    public void setLeaseRenewRatio(double leaseRenewRatio) {
+        if (!(leaseRenewRatio > 0 && leaseRenewRatio < 1)) {
+            throw new IllegalArgumentException("Lease renew ratio must be in (0, 1): " + leaseRenewRatio);
+        }
+        this.leaseRenewRatio = leaseRenewRatio;
+    }
+
+    /**
+     * Get the renew interval of millis unit, at least 1ms
+     */
+    public long getMillisRenewInterval() {
+        return Math.max(1, (long) (millisLease * leaseRenewRatio));
+    }
+
+    public void setEncoding(DLockEncoding encoding) {
+        this.encoding = encoding;
+        this.lockUniqueKeyBytes = encoding == DLockEncoding.COMPACT ? encodeCompactKey()
+                : lockUniqueKey.getBytes(StandardCharsets.UTF_8);
+    }
     
     /**
      * Get the lease of millis unit
      */
     public long getMillisLease() {
-        return leaseTimeUnit.toMillis(lease);
+        return millisLease;
+    }
+
+    /**
+     * Get the decimal bytes of the millis lease, don't modify it
+     */
+    public byte[] getMillisLeaseBytes() {
+        return millisLeaseBytes;
     }
     
+    /**
+     * Derive an auxiliary key from the encoded unique key: $LockUniqueKey:$Suffix
+     *
+     * @param suffix
+     * @return the derived key bytes in the current encoding
+     */
+    public byte[] deriveKeyBytes(String suffix) {
+        byte[] suffixBytes = (DERIVED_KEY_SP + suffix).getBytes(StandardCharsets.UTF_8);
+        byte[] derived = Arrays.copyOf(lockUniqueKeyBytes, lockUniqueKeyBytes.length + suffixBytes.length);
+        System.arraycopy(suffixBytes, 0, derived, lockUniqueKeyBytes.length, suffixBytes.length);
+        return derived;
+    }
+
+    /**
+     * Encode the compact unique key: Prefix | Type | Target
+     */
+    private byte[] encodeCompactKey() {
+        String target = StringUtils.trimToEmpty(lockTarget);
+
+        DLockType dlockType = null;
+        for (DLockType t : DLockType.values()) {
+            if (t.name().equals(lockType)) {
+                dlockType = t;
+            }
+        }
+        Long numericTarget = parseNumeric(target);
+
+        byte[] typeBytes = dlockType != null ? null : lockType.getBytes(StandardCharsets.UTF_8);
+        byte[] targetBytes = numericTarget != null ? null : target.getBytes(StandardCharsets.UTF_8);
+
+        ByteBuffer buffer = ByteBuffer.allocate(1 + (typeBytes == null ? 5 : typeBytes.length + 2)
+                + (targetBytes == null ? 9 : targetBytes.length + 1));
+        buffer.put(COMPACT_UK_PRE);
+
+        if (dlockType != null) {
+            buffer.put(COMPACT_TAG_NUMERIC).putInt(dlockType.value());
+        } else {
+            buffer.put(COMPACT_TAG_TEXT).put(typeBytes).put((byte) 0);
+        }
+
+        if (numericTarget != null) {
+            buffer.put(COMPACT_TAG_NUMERIC).putLong(numericTarget);
+        } else {
+            buffer.put(COMPACT_TAG_TEXT).put(targetBytes);
+        }
+
+        return buffer.array();
+    }
+
+    /**
+     * Parse the canonical decimal target(no leading zeros or plus sign), returns null if not numeric
+     */
+    private static Long parseNumeric(String target) {
+        if (target.isEmpty() || target.length() > 20) {
+            return null;
+        }
+
+        try {
+            long value = Long.parseLong(target);
+            return Long.toString(value).equals(target) ? value : null;
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
     @Override
     public String toString() {
         return ToStringBuilder.reflectionToString(this, ToStringStyle.DEFAULT_STYLE);
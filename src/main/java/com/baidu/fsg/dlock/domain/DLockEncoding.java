@@ -0,0 +1,53 @@
+/*
+ * Copyright (c) 2017 Baidu, Inc. All Rights Reserve.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.baidu.fsg.dlock.domain;
+
+import com.baidu.fsg.dlock.utils.ValuedEnum;
+
+/**
+ * Encoding of the remote lock record(key & value).<p>
+ *
+ * <li>TEXT</li>
+ * Key: $UK_PRE_$LockType_$LockTarget, Value: text locker.<p>
+ *
+ * <li>COMPACT</li>
+ * Key: binary key with the type id of {@link DLockType#value()} and the binary target(8 bytes for the numeric target),
+ * Value: binary locker. It cuts the Redis memory for the massive live lock keys.
+ *
+ * @author yutianbao
+ */
+public enum DLockEncoding implements ValuedEnum<Integer> {
+
+    TEXT(0),
+    COMPACT(1);
+
+    /**
+     * Lock encoding
+     */
+    private final int encoding;
+
+    /**
+     * Constructor with field of encoding
+     */
+    DLockEncoding(int encoding) {
+        this.encoding = encoding;
+    }
+
+    @Override
+    public Integer value() {
+        return encoding;
+    }
+}
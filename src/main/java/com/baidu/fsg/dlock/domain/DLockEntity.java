@@ -20,8 +20,10 @@ import java.io.Serializable;
 import org.apache.commons.lang.builder.ToStringBuilder;
 import org.apache.commons.lang.builder.ToStringStyle;
 
+import com.baidu.fsg.dlock.utils.LockerUtils;
+
 /**
- * DLockEntity represents an distributed lock entity, consists of  lock status, locker, lockTime.
+ * DLockEntity represents an distributed lock entity, consists of  lock status, locker, lockTime, expireTime.
  * 
  * @author chenguoqing
  * @author yutianbao
@@ -35,21 +37,50 @@ public class DLockEntity implements Serializable, Cloneable {
     private DLockStatus lockStatus = DLockStatus.INITIAL;
 
     /**
-     * The server ip address that locked the task
+     * The locker identifies the process(and thread) that locked the task, see {@link LockerUtils}
      */
     private String locker;
 
+    /**
+     * The binary locker for compact encoding, null for text encoding
+     */
+    private byte[] lockerBytes;
+
+    /**
+     * Script params(key & locker & lease) built once by the processor and reused for the following commands,
+     * the entity is bound to a single lock configuration.
+     */
+    private transient byte[][] leaseParams;
+    private transient byte[][] unlockParams;
+
     /**
      * Lock time for milliseconds
      */
     private Long lockTime = -1L;
 
+    /**
+     * Expire time of the lease for milliseconds, -1 if unknown
+     */
+    private Long expireTime = -1L;
+
     /**
      * Constructor
      */
     public DLockEntity() {
     }
 
+    /**
+     * Copy the locker & status to a new entity without the cached script params, so that the same locker can be
+     * used for the other lock.
+     */
+    public DLockEntity copyLocker() {
+        DLockEntity copy = new DLockEntity();
+        copy.locker = locker;
+        copy.lockerBytes = lockerBytes;
+        copy.lockStatus = lockStatus;
+        return copy;
+    }
+
     /**
      * Getters & Setters
      */
@@ -67,6 +98,34 @@ public class DLockEntity implements Serializable, Cloneable {
 
     public void setLocker(String locker) {
         this.locker = locker;
+        this.leaseParams = null;
+        this.unlockParams = null;
+    }
+
+    public byte[] getLockerBytes() {
+        return lockerBytes;
+    }
+
+    public void setLockerBytes(byte[] lockerBytes) {
+        this.lockerBytes = lockerBytes;
+        this.leaseParams = null;
+        this.unlockParams = null;
+    }
+
+    public byte[][] getLeaseParams() {
+        return leaseParams;
+    }
+
+    public void setLeaseParams(byte[][] leaseParams) {
+        this.leaseParams = leaseParams;
+    }
+
+    public byte[][] getUnlockParams() {
+        return unlockParams;
+    }
+
+    public void setUnlockParams(byte[][] unlockParams) {
+        this.unlockParams = unlockParams;
     }
 
     public Long getLockTime() {
@@ -76,6 +135,14 @@ public class DLockEntity implements Serializable, Cloneable {
     public void setLockTime(Long lockTime) {
         this.lockTime = lockTime;
     }
+
+    public Long getExpireTime() {
+        return expireTime;
+    }
+
+    public void setExpireTime(Long expireTime) {
+        this.expireTime = expireTime;
+    }
     
     @Override
     public String toString() {
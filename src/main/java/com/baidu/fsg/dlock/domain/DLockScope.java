@@ -0,0 +1,55 @@
+/*
+ * Copyright (c) 2017 Baidu, Inc. All Rights Reserve.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.baidu.fsg.dlock.domain;
+
+import com.baidu.fsg.dlock.utils.ValuedEnum;
+
+/**
+ * Lock ownership scope of the remote lock record.<p>
+ *
+ * <li>THREAD</li>
+ * The locker identifies the holding thread, every local thread switch has to release and re-acquire remotely.<p>
+ *
+ * <li>PROCESS</li>
+ * The locker identifies the lock instance of the process, the owner thread and reentrancy are tracked locally, so
+ * that the remote lock can be handed over between the local competitors of the instance without any remote call.
+ * The instances of the same key in one process compete remotely as the different processes, share one instance per
+ * key to hand over locally.
+ *
+ * @author yutianbao
+ */
+public enum DLockScope implements ValuedEnum<Integer> {
+
+    THREAD(0),
+    PROCESS(1);
+
+    /**
+     * Lock scope
+     */
+    private final int scope;
+
+    /**
+     * Constructor with field of scope
+     */
+    DLockScope(int scope) {
+        this.scope = scope;
+    }
+
+    @Override
+    public Integer value() {
+        return scope;
+    }
+}
@@ -0,0 +1,45 @@
+/*
+ * Copyright (c) 2017 Baidu, Inc. All Rights Reserve.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.baidu.fsg.dlock.exception;
+
+/**
+ * CircuitOpenException is thrown when the remote call is rejected fast by the open circuit breaker
+ * 
+ * @author yutianbao
+ */
+public class CircuitOpenException extends DLockProcessException {
+
+    /**
+     * Serial Version UID
+     */
+    private static final long serialVersionUID = 6402315881947328617L;
+
+    /**
+     * Default constructor
+     */
+    public CircuitOpenException() {
+        super();
+    }
+
+    /**
+     * Constructor with message
+     * @param message
+     */
+    public CircuitOpenException(String message) {
+        super(message);
+    }
+
+}
@@ -15,19 +15,27 @@
  */
 package com.baidu.fsg.dlock.exception;
 
+import com.baidu.fsg.dlock.domain.DLockEntity;
+
 /**
- * OptimisticLockingException
+ * OptimisticLockingException, the current lock is carried if it is retrieved by the failed command
  *
  * @author yutianbao
  */
 public class OptimisticLockingException extends RuntimeException {
     private static final long serialVersionUID = -8879525250880790138L;
 
+    /**
+     * The current lock hold by the other one, may be null
+     */
+    private final transient DLockEntity currentLock;
+
     /**
      * Default constructor
      */
     public OptimisticLockingException() {
         super();
+        this.currentLock = null;
     }
 
     /**
@@ -38,6 +46,7 @@ public class OptimisticLockingException extends RuntimeException {
      */
     public OptimisticLockingException(String message, Throwable cause) {
         super(message, cause);
+        this.currentLock = null;
     }
 
     /**
@@ -47,6 +56,25 @@ public class OptimisticLockingException extends RuntimeException {
      */
     public OptimisticLockingException(String message) {
         super(message);
+        this.currentLock = null;
+    }
+
+    /**
+     * Constructor with message & the current lock
+     *
+     * @param message
+     * @param currentLock
+     */
+    public OptimisticLockingException(String message, DLockEntity currentLock) {
+        super(message);
+        this.currentLock = currentLock;
+    }
+
+    /**
+     * Getter
+     */
+    public DLockEntity getCurrentLock() {
+        return currentLock;
     }
 
 }
@@ -17,24 +17,125 @@ package com.baidu.fsg.dlock.jedis;
 
 import java.util.List;
 
+import javax.annotation.PostConstruct;
 import javax.annotation.Resource;
 
+import org.apache.commons.pool2.impl.GenericObjectPoolConfig;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.stereotype.Service;
 
+import redis.clients.jedis.BinaryJedisPubSub;
 import redis.clients.jedis.Jedis;
 import redis.clients.jedis.JedisPool;
+import redis.clients.jedis.Pipeline;
+import redis.clients.jedis.exceptions.JedisException;
 
 /**
- * Jedis client
+ * Jedis client<p>
+ *
+ * The pool is warmed up with the minIdle connections of the optional "jedisPoolConfig" at startup, so that the first
+ * commands don't pay for the connection creation. Validate the idle connections in background(testWhileIdle) instead
+ * of on each borrow(testOnBorrow), which saves a PING round trip from each command.<p>
+ *
+ * The lease & unlock commands of the current holders are sent through the optional "leaseJedisPool", so that they
+ * don't wait for the connections exhausted by the acquiring storm, and the leases are not lost while the locks are
+ * held. The lease pool must connect to the same redis, it is warmed up with the optional "leaseJedisPoolConfig".
+ * All the commands share the "jedisPool" if the lease pool is absent.<p>
+ *
+ * The blocking pops of the condition waiters are sent through the optional "conditionJedisPool", so that the waiting
+ * threads don't hold the connections of the acquiring commands. They share the "jedisPool" if it is absent.
  *
  * @author yutianbao
  */
 @Service
 public class JedisClient {
+    private static final Logger LOGGER = LoggerFactory.getLogger(JedisClient.class);
 
     @Resource
     private JedisPool jedisPool;
 
+    /**
+     * Config of the jedis pool, optional for the warm-up
+     */
+    @Autowired(required = false)
+    @Qualifier("jedisPoolConfig")
+    private GenericObjectPoolConfig jedisPoolConfig;
+
+    /**
+     * Dedicated pool for the lease & unlock commands and its config, both are optional
+     */
+    @Autowired(required = false)
+    @Qualifier("leaseJedisPool")
+    private JedisPool leaseJedisPool;
+
+    @Autowired(required = false)
+    @Qualifier("leaseJedisPoolConfig")
+    private GenericObjectPoolConfig leaseJedisPoolConfig;
+
+    /**
+     * Dedicated pool for the condition waiting commands, optional
+     */
+    @Autowired(required = false)
+    @Qualifier("conditionJedisPool")
+    private JedisPool conditionJedisPool;
+
+    /**
+     * Open the minIdle connections of the pool configs
+     */
+    @PostConstruct
+    public void init() {
+        if (jedisPoolConfig != null) {
+            warmUp(jedisPool, jedisPoolConfig.getMinIdle());
+        }
+        if (leaseJedisPool != null && leaseJedisPoolConfig != null) {
+            warmUp(leaseJedisPool, leaseJedisPoolConfig.getMinIdle());
+        }
+    }
+
+    /**
+     * Open the idle connections until the count is reached
+     *
+     * @param connections count of the idle connections
+     */
+    public void warmUp(int connections) {
+        warmUp(jedisPool, connections);
+    }
+
+    /**
+     * Whether the lease & unlock commands are sent through the dedicated pool
+     */
+    public boolean hasLeasePool() {
+        return leaseJedisPool != null;
+    }
+
+    /**
+     * Count of the idle connections in the pool
+     */
+    public int getNumIdle() {
+        return jedisPool.getNumIdle();
+    }
+
+    /**
+     * Ping command
+     *
+     * @return PONG
+     */
+    public String ping() {
+        Jedis jedis = null;
+        try {
+            jedis = jedisPool.getResource();
+            return jedis.ping();
+
+        } finally {
+            if (jedis != null) {
+                jedis.close();
+            }
+        }
+    }
+
     /**
      * String get command
      *
@@ -54,6 +155,25 @@ public class JedisClient {
         }
     }
 
+    /**
+     * Binary get command
+     *
+     * @param key
+     * @return
+     */
+    public byte[] get(byte[] key) {
+        Jedis jedis = null;
+        try {
+            jedis = jedisPool.getResource();
+            return jedis.get(key);
+
+        } finally {
+            if (jedis != null) {
+                jedis.close();
+            }
+        }
+    }
+
     /**
      * String set command
      *
@@ -98,6 +218,111 @@ public class JedisClient {
         }
     }
 
+    /**
+     * Eval lua script command with the binary params(keys first)
+     *
+     * @param script
+     * @param keyCount
+     * @param params
+     * @return
+     */
+    public Object eval(byte[] script, int keyCount, byte[]... params) {
+        Jedis jedis = null;
+        try {
+            jedis = jedisPool.getResource();
+            return jedis.eval(script, keyCount, params);
+
+        } finally {
+            if (jedis != null) {
+                jedis.close();
+            }
+        }
+    }
+
+    /**
+     * Evalsha command with the binary params(keys first)
+     *
+     * @param sha1 digest of the script cached by redis
+     * @param keyCount
+     * @param params
+     * @return
+     * @throws redis.clients.jedis.exceptions.JedisDataException with NOSCRIPT error if the script is not cached
+     */
+    public Object evalsha(byte[] sha1, int keyCount, byte[]... params) {
+        Jedis jedis = null;
+        try {
+            jedis = jedisPool.getResource();
+            return jedis.evalsha(sha1, keyCount, params);
+
+        } finally {
+            if (jedis != null) {
+                jedis.close();
+            }
+        }
+    }
+
+    /**
+     * Evalsha command for the lease & unlock commands, through the lease pool if it is present
+     *
+     * @param sha1 digest of the script cached by redis
+     * @param keyCount
+     * @param params
+     * @return
+     * @throws redis.clients.jedis.exceptions.JedisDataException with NOSCRIPT error if the script is not cached
+     */
+    public Object leaseEvalsha(byte[] sha1, int keyCount, byte[]... params) {
+        Jedis jedis = null;
+        try {
+            jedis = getLeasePool().getResource();
+            return jedis.evalsha(sha1, keyCount, params);
+
+        } finally {
+            if (jedis != null) {
+                jedis.close();
+            }
+        }
+    }
+
+    /**
+     * Eval command for the lease & unlock commands, through the lease pool if it is present
+     *
+     * @param script
+     * @param keyCount
+     * @param params
+     * @return
+     */
+    public Object leaseEval(byte[] script, int keyCount, byte[]... params) {
+        Jedis jedis = null;
+        try {
+            jedis = getLeasePool().getResource();
+            return jedis.eval(script, keyCount, params);
+
+        } finally {
+            if (jedis != null) {
+                jedis.close();
+            }
+        }
+    }
+
+    /**
+     * Script load command
+     *
+     * @param script
+     * @return the digest of the script
+     */
+    public byte[] scriptLoad(byte[] script) {
+        Jedis jedis = null;
+        try {
+            jedis = jedisPool.getResource();
+            return jedis.scriptLoad(script);
+
+        } finally {
+            if (jedis != null) {
+                jedis.close();
+            }
+        }
+    }
+
     /**
      * String delete command
      *
@@ -117,4 +342,174 @@ public class JedisClient {
         }
     }
 
+    /**
+     * Binary delete command
+     *
+     * @param key
+     * @return
+     */
+    public Long del(byte[] key) {
+        Jedis jedis = null;
+        try {
+            jedis = jedisPool.getResource();
+            return jedis.del(key);
+
+        } finally {
+            if (jedis != null) {
+                jedis.close();
+            }
+        }
+    }
+
+    /**
+     * Binary lpop command
+     *
+     * @param key
+     * @return
+     */
+    public byte[] lpop(byte[] key) {
+        Jedis jedis = null;
+        try {
+            jedis = getConditionPool().getResource();
+            return jedis.lpop(key);
+
+        } finally {
+            if (jedis != null) {
+                jedis.close();
+            }
+        }
+    }
+
+    /**
+     * Binary blpop command, the connection is blocked until an element is popped or timeout
+     *
+     * @param timeout timeout in seconds
+     * @param key
+     * @return the key & popped element, null if timeout
+     */
+    public List<byte[]> blpop(int timeout, byte[] key) {
+        Jedis jedis = null;
+        try {
+            jedis = getConditionPool().getResource();
+            return jedis.blpop(timeout, key);
+
+        } finally {
+            if (jedis != null) {
+                jedis.close();
+            }
+        }
+    }
+
+    /**
+     * Binary pttl command
+     *
+     * @param key
+     * @return remaining time to live in milliseconds, -2 if the key does not exist, -1 if no expire
+     */
+    public Long pttl(byte[] key) {
+        Jedis jedis = null;
+        try {
+            jedis = jedisPool.getResource();
+            return jedis.pttl(key);
+
+        } finally {
+            if (jedis != null) {
+                jedis.close();
+            }
+        }
+    }
+
+    /**
+     * Binary pexpire command
+     *
+     * @param key
+     * @param milliseconds
+     * @return 1 if the timeout was set, 0 if the key does not exist
+     */
+    public Long pexpire(byte[] key, long milliseconds) {
+        Jedis jedis = null;
+        try {
+            jedis = jedisPool.getResource();
+            return jedis.pexpire(key, milliseconds);
+
+        } finally {
+            if (jedis != null) {
+                jedis.close();
+            }
+        }
+    }
+
+    /**
+     * Binary subscribe command, the connection is blocked until all the channels are unsubscribed
+     *
+     * @param pubSub
+     * @param channels
+     */
+    public void subscribe(BinaryJedisPubSub pubSub, byte[]... channels) {
+        Jedis jedis = null;
+        try {
+            jedis = jedisPool.getResource();
+            jedis.subscribe(pubSub, channels);
+
+        } finally {
+            if (jedis != null) {
+                jedis.close();
+            }
+        }
+    }
+
+    /**
+     * Pipelined binary MGET & PTTL commands in one round trip
+     *
+     * @param keys
+     * @return the values of MGET, followed by the remaining time to live(PTTL) of each key
+     */
+    public List<Object> mgetWithPttl(byte[]... keys) {
+        Jedis jedis = null;
+        try {
+            jedis = jedisPool.getResource();
+            Pipeline pipeline = jedis.pipelined();
+            pipeline.mget(keys);
+            for (byte[] key : keys) {
+                pipeline.pttl(key);
+            }
+            return pipeline.syncAndReturnAll();
+
+        } finally {
+            if (jedis != null) {
+                jedis.close();
+            }
+        }
+    }
+
+    /**
+     * The pool for the lease & unlock commands
+     */
+    private JedisPool getLeasePool() {
+        return leaseJedisPool != null ? leaseJedisPool : jedisPool;
+    }
+
+    /**
+     * The pool for the condition waiting commands
+     */
+    private JedisPool getConditionPool() {
+        return conditionJedisPool != null ? conditionJedisPool : jedisPool;
+    }
+
+    /**
+     * Open the idle connections of the pool until the count is reached
+     */
+    private static void warmUp(JedisPool pool, int connections) {
+        int missing = connections - pool.getNumIdle();
+        if (missing <= 0) {
+            return;
+        }
+
+        try {
+            pool.addObjects(missing);
+        } catch (JedisException e) {
+            LOGGER.warn("Fail to warm up the jedis pool, connections:" + connections, e);
+        }
+    }
+
 }
@@ -0,0 +1,245 @@
+/*
+ * Copyright (c) 2017 Baidu, Inc. All Rights Reserve.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.baidu.fsg.dlock.processor;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * CircuitBreaker protects the persistent system(such as Redis) from the retry storm while it is failing.<p>
+ *
+ * The outcomes of the remote calls are recorded in a rolling window of time buckets. The circuit is opened when
+ * the failure rate of the window reaches the threshold, and the calls are rejected fast during the open duration.
+ * After that the circuit is half-open, only one probe call is permitted at a time, the circuit is closed if the probe
+ * succeeds, or opened again if it fails.
+ *
+ * @author yutianbao
+ */
+public class CircuitBreaker {
+    private static final Logger LOGGER = LoggerFactory.getLogger(CircuitBreaker.class);
+
+    /**
+     * Circuit state
+     */
+    public enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    /**
+     * Rolling window: bucket count & bucket duration(ms)
+     */
+    private final int bucketCount;
+    private final long bucketMillis;
+
+    /**
+     * Minimum calls in the window before evaluating the failure rate
+     */
+    private volatile int minimumCalls = 20;
+
+    /**
+     * Failure rate threshold in percentage
+     */
+    private volatile int failureRateThreshold = 50;
+
+    /**
+     * Duration(ms) of the open state before the half-open probing
+     */
+    private volatile long openMillis = 5000;
+
+    private final AtomicReferenceArray<Bucket> buckets;
+    private final AtomicReference<State> state = new AtomicReference<>(State.CLOSED);
+    private final AtomicBoolean probing = new AtomicBoolean(false);
+    private volatile long openedTime;
+
+    /**
+     * Time bucket of the rolling window, a bucket is bound to one epoch and swapped out as a whole when stale
+     */
+    static class Bucket {
+        final long epoch;
+        final LongAdder successes = new LongAdder();
+        final LongAdder failures = new LongAdder();
+
+        Bucket(long epoch) {
+            this.epoch = epoch;
+        }
+    }
+
+    /**
+     * Constructor with default window: 10 buckets of 1 second
+     */
+    public CircuitBreaker() {
+        this(10, 1000);
+    }
+
+    /**
+     * Constructor with rolling window
+     */
+    public CircuitBreaker(int bucketCount, long bucketMillis) {
+        if (bucketCount <= 0 || bucketMillis <= 0) {
+            throw new IllegalArgumentException("Illegal rolling window: " + bucketCount + "*" + bucketMillis + "ms");
+        }
+
+        this.bucketCount = bucketCount;
+        this.bucketMillis = bucketMillis;
+        this.buckets = new AtomicReferenceArray<>(bucketCount);
+        resetBuckets();
+    }
+
+    /**
+     * Try to acquire the permission for a remote call. The caller must record the outcome by
+     * {@link #onSuccess()} or {@link #onFailure()} once permitted.
+     *
+     * @return false if the call should be rejected fast
+     */
+    public boolean tryAcquirePermission() {
+        State current = state.get();
+        if (current == State.CLOSED) {
+            return true;
+        }
+
+        if (current == State.OPEN) {
+            if (System.currentTimeMillis() - openedTime < openMillis) {
+                return false;
+            }
+            // the open duration is passed, go to half-open for probing
+            if (state.compareAndSet(State.OPEN, State.HALF_OPEN)) {
+                LOGGER.info("Circuit breaker is half-open");
+            }
+        }
+
+        // only one probe at a time
+        return probing.compareAndSet(false, true);
+    }
+
+    /**
+     * Record a successful call
+     */
+    public void onSuccess() {
+        currentBucket().successes.increment();
+
+        if (state.get() == State.HALF_OPEN && state.compareAndSet(State.HALF_OPEN, State.CLOSED)) {
+            resetBuckets();
+            probing.set(false);
+            LOGGER.info("Circuit breaker is closed");
+        }
+    }
+
+    /**
+     * Record a failed call
+     */
+    public void onFailure() {
+        currentBucket().failures.increment();
+
+        State current = state.get();
+        if (current == State.HALF_OPEN) {
+            open(State.HALF_OPEN);
+
+        } else if (current == State.CLOSED) {
+            long successes = 0;
+            long failures = 0;
+            long minEpoch = System.currentTimeMillis() / bucketMillis - bucketCount;
+            for (int i = 0; i < bucketCount; i++) {
+                Bucket bucket = buckets.get(i);
+                if (bucket.epoch > minEpoch) {
+                    successes += bucket.successes.sum();
+                    failures += bucket.failures.sum();
+                }
+            }
+
+            long calls = successes + failures;
+            if (calls >= minimumCalls && failures * 100 >= calls * failureRateThreshold) {
+                open(State.CLOSED);
+            }
+        }
+    }
+
+    /**
+     * Open the circuit from the expected state
+     */
+    private void open(State expected) {
+        if (state.compareAndSet(expected, State.OPEN)) {
+            openedTime = System.currentTimeMillis();
+            probing.set(false);
+            LOGGER.warn("Circuit breaker is opened from {}", expected);
+        }
+    }
+
+    /**
+     * Retrieve the bucket of current time, the stale bucket is replaced by a new one of current epoch
+     */
+    private Bucket currentBucket() {
+        long epoch = System.currentTimeMillis() / bucketMillis;
+        int index = (int) (epoch % bucketCount);
+
+        for (;;) {
+            Bucket bucket = buckets.get(index);
+            // the slot may be advanced by the other thread already, never swap it back
+            if (bucket.epoch >= epoch) {
+                return bucket;
+            }
+            Bucket fresh = new Bucket(epoch);
+            if (buckets.compareAndSet(index, bucket, fresh)) {
+                return fresh;
+            }
+        }
+    }
+
+    private void resetBuckets() {
+        for (int i = 0; i < bucketCount; i++) {
+            buckets.set(i, new Bucket(-1));
+        }
+    }
+
+    /**
+     * Getters
+     */
+    public State getState() {
+        return state.get();
+    }
+
+    public int getMinimumCalls() {
+        return minimumCalls;
+    }
+
+    public int getFailureRateThreshold() {
+        return failureRateThreshold;
+    }
+
+    public long getOpenMillis() {
+        return openMillis;
+    }
+
+    /**
+     * Setters
+     */
+    public void setMinimumCalls(int minimumCalls) {
+        this.minimumCalls = minimumCalls;
+    }
+
+    public void setFailureRateThreshold(int failureRateThreshold) {
+        this.failureRateThreshold = failureRateThreshold;
+    }
+
+    public void setOpenMillis(long openMillis) {
+        this.openMillis = openMillis;
+    }
+
+}
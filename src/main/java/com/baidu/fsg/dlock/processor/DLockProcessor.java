@@ -15,8 +15,15 @@
  */
 package com.baidu.fsg.dlock.processor;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
 import com.baidu.fsg.dlock.domain.DLockConfig;
 import com.baidu.fsg.dlock.domain.DLockEntity;
+import com.baidu.fsg.dlock.exception.OptimisticLockingException;
 
 /**
  * The distributed lock processor interface for retrieving and updating lock status
@@ -34,6 +41,36 @@ public interface DLockProcessor {
      */
     DLockEntity load(String uniqueKey);
 
+    /**
+     * Retrieve the {@link DLockEntity} by the lock configuration, the key is encoded as
+     * {@link DLockConfig#getEncoding()}. By default it is loaded by the string unique key.
+     *
+     * @param lockConfig
+     * @return
+     */
+    default DLockEntity load(DLockConfig lockConfig) {
+        return load(lockConfig.getLockUniqueKey());
+    }
+
+    /**
+     * Retrieve the {@link DLockEntity}s by the lock configurations in bulk, the keys are encoded as
+     * {@link DLockConfig#getEncoding()} of each. The implementations should retrieve the locker and the expire time
+     * of the lease. By default it is loaded one by one.
+     *
+     * @param lockConfigs
+     * @return the held locks mapped by the unique key in iteration order, the free keys are absent
+     */
+    default Map<String, DLockEntity> loadAll(Collection<DLockConfig> lockConfigs) {
+        Map<String, DLockEntity> locks = new LinkedHashMap<>();
+        for (DLockConfig lockConfig : lockConfigs) {
+            DLockEntity lock = load(lockConfig);
+            if (lock != null) {
+                locks.put(lockConfig.getLockUniqueKey(), lock);
+            }
+        }
+        return locks;
+    }
+
     /**
      * The method implements the "lock" syntax<br>
      * <li>DB</li>
@@ -49,6 +86,45 @@ public interface DLockProcessor {
      */
     void updateForLock(DLockEntity newLock, DLockConfig lockConfig);
 
+    /**
+     * The method implements the "lock" syntax for the queued waiter, which will retry until the lock is acquired.<br>
+     * For the fair lock, the implementations should register the waiter in the remote queue if the lock is not
+     * acquired, so that the lock can be handed over to the waiters in FIFO order while unlocking. It is the same as
+     * {@link #updateForLock(DLockEntity, DLockConfig)} by default.
+     *
+     * @param newLock
+     * @param lockConfig
+     * @throw OptimisticLockingFailureException
+     */
+    default void updateForQueuedLock(DLockEntity newLock, DLockConfig lockConfig) {
+        updateForLock(newLock, lockConfig);
+    }
+
+    /**
+     * The method implements the "lock" syntax for any count of the locks, the free locks are acquired in order until
+     * the count is reached. The locks should share the same lease & encoding. By default it is locked one by one.
+     *
+     * @param newLock with the locker shared by the locks
+     * @param lockConfigs
+     * @param count max count of the locks to acquire
+     * @return the configurations of the acquired locks
+     */
+    default List<DLockConfig> updateForClaim(DLockEntity newLock, List<DLockConfig> lockConfigs, int count) {
+        List<DLockConfig> claimed = new ArrayList<>(Math.min(count, lockConfigs.size()));
+        for (DLockConfig lockConfig : lockConfigs) {
+            if (claimed.size() >= count) {
+                break;
+            }
+            try {
+                updateForLock(newLock.copyLocker(), lockConfig);
+                claimed.add(lockConfig);
+            } catch (OptimisticLockingException e) {
+                // hold by the other one, try the next
+            }
+        }
+        return claimed;
+    }
+
     /**
      * The method implements the "lock" syntax with existing expire lock.<br>
      * <li>DB</li>
@@ -72,6 +148,26 @@ public interface DLockProcessor {
      */
     void expandLockExpire(DLockEntity newLeaseLock, DLockConfig lockConfig);
 
+    /**
+     * Expand the lock expire time for the locks with the same locker, kind of the locks acquired by
+     * {@link #updateForClaim(DLockEntity, List, int)}. By default it is expanded one by one.
+     *
+     * @param leaseLock with the locker shared by the locks
+     * @param lockConfigs
+     * @return the configurations of the locks which are released or hold by the other one
+     */
+    default List<DLockConfig> expandLockExpireAll(DLockEntity leaseLock, List<DLockConfig> lockConfigs) {
+        List<DLockConfig> lost = new ArrayList<>();
+        for (DLockConfig lockConfig : lockConfigs) {
+            try {
+                expandLockExpire(leaseLock.copyLocker(), lockConfig);
+            } catch (OptimisticLockingException e) {
+                lost.add(lockConfig);
+            }
+        }
+        return lost;
+    }
+
     /**
      * The method implements the "unlock" syntax.<br>
      *
@@ -85,6 +181,123 @@ public interface DLockProcessor {
      */
     void updateForUnlock(DLockEntity currentLock, DLockConfig lockConfig);
 
+    /**
+     * The method implements the "unlock" syntax for the locks in bulk, kind of releasing all the held locks while
+     * shutting down. By default it is unlocked one by one.
+     *
+     * @param currentLocks with locker in it, in the order of the configurations
+     * @param lockConfigs
+     * @return the configurations of the locks which are released or hold by the other one already
+     */
+    default List<DLockConfig> updateForUnlockAll(List<DLockEntity> currentLocks, List<DLockConfig> lockConfigs) {
+        List<DLockConfig> lost = new ArrayList<>();
+        for (int i = 0; i < lockConfigs.size(); i++) {
+            try {
+                updateForUnlock(currentLocks.get(i), lockConfigs.get(i));
+            } catch (OptimisticLockingException e) {
+                lost.add(lockConfigs.get(i));
+            }
+        }
+        return lost;
+    }
+
+    /**
+     * Register a waiter of the condition, before the waiter releases the lock
+     *
+     * @param lockConfig
+     * @param conditionName
+     */
+    default void addConditionWaiter(DLockConfig lockConfig, String conditionName) {
+        throw new UnsupportedOperationException("addConditionWaiter is not supported");
+    }
+
+    /**
+     * Renew the registered waiters of the condition, so that they are not expired while waiting. By default the
+     * registered waiters never expire.
+     *
+     * @param lockConfig
+     * @param conditionName
+     */
+    default void renewConditionWaiter(DLockConfig lockConfig, String conditionName) {
+    }
+
+    /**
+     * Wait for a signal of the condition. The implementations may block for the timeout, or poll once without
+     * blocking if the timeout is shorter than its blocking granularity.
+     *
+     * @param lockConfig
+     * @param conditionName
+     * @param timeoutMillis
+     * @return true if a signal is received
+     */
+    default boolean awaitConditionSignal(DLockConfig lockConfig, String conditionName, long timeoutMillis) {
+        throw new UnsupportedOperationException("awaitConditionSignal is not supported");
+    }
+
+    /**
+     * Cancel the registered waiter of the condition which is not signaled(timeout or interrupted).
+     * If the waiter has been signaled already, the signal is consumed instead.
+     *
+     * @param lockConfig
+     * @param conditionName
+     * @return true if the signal is consumed
+     */
+    default boolean cancelConditionWaiter(DLockConfig lockConfig, String conditionName) {
+        throw new UnsupportedOperationException("cancelConditionWaiter is not supported");
+    }
+
+    /**
+     * Signal one or all the registered waiters of the condition
+     *
+     * @param lockConfig
+     * @param conditionName
+     * @param all
+     * @return count of the signaled waiters
+     */
+    default long signalCondition(DLockConfig lockConfig, String conditionName, boolean all) {
+        throw new UnsupportedOperationException("signalCondition is not supported");
+    }
+
+    /**
+     * Remaining lease of the lock hold by the others, so that the waiters can retry just after it is expired.
+     * By default it is the whole lease if the lock is not free.
+     *
+     * @param lockConfig
+     * @return remaining lease in milliseconds, 0 if the lock is free
+     */
+    default long getRemainingLease(DLockConfig lockConfig) {
+        return isLockFree(lockConfig) ? 0 : lockConfig.getMillisLease();
+    }
+
+    /**
+     * Subscribe the release signal of the lock, the listener is notified once the lock is released by any node.
+     * The signal is best-effort, the waiters should still retry by the remaining lease.
+     *
+     * @param lockConfig
+     * @param listener
+     * @return false if the release signal is not supported
+     */
+    default boolean subscribeRelease(DLockConfig lockConfig, Runnable listener) {
+        return false;
+    }
+
+    /**
+     * Unsubscribe the release signal of the lock
+     *
+     * @param lockConfig
+     * @param listener
+     */
+    default void unsubscribeRelease(DLockConfig lockConfig, Runnable listener) {
+    }
+
+    /**
+     * Whether the processor is ready for the lock commands, kind of the readiness probe. It is always ready by
+     * default.
+     */
+    default boolean isReady() {
+        return true;
+    }
+
     /**
      * Whether the lock is free(released or expired)
      *
@@ -93,4 +306,15 @@ public interface DLockProcessor {
      */
     boolean isLockFree(String uniqueKey);
 
+    /**
+     * Whether the lock is free(released or expired), the key is encoded as {@link DLockConfig#getEncoding()}.
+     * By default it is checked by the string unique key.
+     *
+     * @param lockConfig
+     * @return true if lock is released
+     */
+    default boolean isLockFree(DLockConfig lockConfig) {
+        return isLockFree(lockConfig.getLockUniqueKey());
+    }
+
 }
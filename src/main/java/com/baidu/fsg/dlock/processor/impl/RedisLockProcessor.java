@@ -15,8 +15,15 @@
  */
 package com.baidu.fsg.dlock.processor.impl;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import javax.annotation.Resource;
 
 import org.slf4j.Logger;
@@ -24,19 +31,54 @@ import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
 
 import com.baidu.fsg.dlock.domain.DLockConfig;
+import com.baidu.fsg.dlock.domain.DLockEncoding;
 import com.baidu.fsg.dlock.domain.DLockEntity;
 import com.baidu.fsg.dlock.domain.DLockStatus;
+import com.baidu.fsg.dlock.exception.CircuitOpenException;
 import com.baidu.fsg.dlock.exception.OptimisticLockingException;
 import com.baidu.fsg.dlock.exception.RedisProcessException;
 import com.baidu.fsg.dlock.jedis.JedisClient;
+import com.baidu.fsg.dlock.processor.CircuitBreaker;
 import com.baidu.fsg.dlock.processor.DLockProcessor;
+import com.baidu.fsg.dlock.utils.LockerUtils;
+
+import redis.clients.jedis.exceptions.JedisDataException;
+import redis.clients.util.SafeEncoder;
 
 /**
- * The implement of {@link DLockProcessor}. Command set(with NX & PX) & Lua script is used for atomic operations.
+ * The implement of {@link DLockProcessor}. Lua script is used for atomic operations.
  * Redis version must be greater than 2.6.12<p>
  *
  * DataModel:<br>
- * Key: LockUniqueKey, Value: Locker(IP + ThreadID), Expire: lease duration(ms).
+ * Key: LockUniqueKey, Value: Locker(InstanceID + ThreadID), Expire: lease duration(ms).<p>
+ *
+ * The commands are sent by the binary API of Jedis, with the pre-encoded key of {@link DLockConfig} and the locker
+ * encoded as {@link DLockConfig#getEncoding()}. The script params of the lease & unlock commands are built once and
+ * cached in the {@link DLockEntity}, so that the periodic lease expanding allocates nothing but the network buffer.<p>
+ *
+ * The scripts are preloaded at startup and invoked by EVALSHA, see {@link RedisScript}.<p>
+ *
+ * All the redis outcomes are recorded by the {@link CircuitBreaker}. The lock & load commands are rejected fast by
+ * {@link CircuitOpenException} while the circuit is open, but the lease & unlock commands are always sent for the
+ * current holders, through the dedicated lease pool of {@link JedisClient} if it is configured.<p>
+ *
+ * Fair DataModel(see {@link DLockConfig#isFair()}):<br>
+ * Key: LockUniqueKey:QUEUE, ZSet of the waiter lockers(tickets), score is the ascending sequence. The locker of fair
+ * lock is unique per waiter, see {@link com.baidu.fsg.dlock.DistributedReentrantLock}.<br>
+ * Key: LockUniqueKey:TIMEOUT, ZSet of the waiter lockers, score is the ticket timeout(epoch ms), the timeout waiters
+ * are purged from the queue. The queued waiter refreshes the timeout by each attempt.<br>
+ * The lock is acquired only if it is free and the waiter is the first ticket(or the queue is empty), and the unlock
+ * script hands the lock over to the first ticket directly.<p>
+ *
+ * Release Channel: LockUniqueKey:RELEASED, the unlock script publishes to it, so that the waiters of the other nodes
+ * can compete at once instead of waiting for the next poll.<p>
+ *
+ * Condition DataModel:<br>
+ * Key: LockUniqueKey:COND:$Name:WAITERS, count of the registered waiters.<br>
+ * Key: LockUniqueKey:COND:$Name:SIGNALS, List of the signal tokens, the waiter is blocked by BLPOP. The signal
+ * script pushes the tokens only for the registered waiters, so that no token is left without a waiter.<br>
+ * Both keys expire after an hour without any registering, signaling or renewal, so that the count & tokens left by
+ * the crashed waiters are cleaned up. The waiting waiters renew the TTL periodically.
  *
  * @author yutianbao
  */
@@ -47,29 +89,317 @@ public class RedisLockProcessor implements DLockProcessor {
     /**
      * Redis command & result code constant
      */
-    private static final String SET_ARG_NOT_EXIST = "NX";
-    private static final String SET_ARG_EXPIRE = "PX";
-    private static final String RES_OK = "OK";
+    private static final int EVAL_ONE_KEY = 1;
+    private static final int EVAL_TWO_KEYS = 2;
+    private static final int EVAL_THREE_KEYS = 3;
+    private static final byte[] FLAG_TRUE = SafeEncoder.encode("1");
+    private static final byte[] FLAG_FALSE = SafeEncoder.encode("0");
+
+    /**
+     * Count of the keys loaded in one round trip by {@link #loadAll(Collection)}
+     */
+    private static final int LOAD_ALL_CHUNK_SIZE = 500;
+
+    /**
+     * Set with expire if key is not existed, and return 1. Otherwise return the current locker & PTTL.<br>
+     * The same locker is not reentrant here. The reentrancy is counted locally, and a lock instance acquires remotely
+     * only while it holds nothing, so an equal locker is a hold orphaned by a failed release and is left to expire.
+     */
+    private static final RedisScript ACQUIRE_SCRIPT = new RedisScript(
+              "local owner = redis.call('get', KEYS[1]); "
+            + "if (owner == false) then "
+            + "    redis.call('set', KEYS[1], ARGV[1], 'PX', ARGV[2]); "
+            + "    return 1; "
+            + "end; "
+            + "return {owner, redis.call('pttl', KEYS[1])};");
+
+    /**
+     * Claim, KEYS: locks; ARGV: locker, lease, count.<br>
+     * Set with expire for the free keys in order until the count is reached, returns the indexes(1-based) of the
+     * claimed keys.
+     */
+    private static final RedisScript CLAIM_SCRIPT = new RedisScript(
+              "local claimed = {}; "
+            + "local count = tonumber(ARGV[3]); "
+            + "for i = 1, #KEYS do "
+            + "    if (#claimed >= count) then "
+            + "        break; "
+            + "    end; "
+            + "    if (redis.call('set', KEYS[i], ARGV[1], 'NX', 'PX', ARGV[2])) then "
+            + "        claimed[#claimed + 1] = i; "
+            + "    end; "
+            + "end; "
+            + "return claimed;");
+
+    /**
+     * Expand lease for all the keys, KEYS: locks; ARGV: locker, lease.<br>
+     * Expire the keys equal with the specified value(locker), returns the indexes(1-based) of the lost keys.
+     */
+    private static final RedisScript LEASE_ALL_SCRIPT = new RedisScript(
+              "local lost = {}; "
+            + "for i = 1, #KEYS do "
+            + "    if (redis.call('get', KEYS[i]) == ARGV[1]) then "
+            + "        redis.call('pexpire', KEYS[i], ARGV[2]); "
+            + "    else "
+            + "        lost[#lost + 1] = i; "
+            + "    end; "
+            + "end; "
+            + "return lost;");
+
+    /**
+     * Expire if key is existed and equal with the specified value(locker).
+     */
+    private static final RedisScript LEASE_SCRIPT = new RedisScript(
+              "if (redis.call('get', KEYS[1]) == ARGV[1]) then "
+            + "    return redis.call('pexpire', KEYS[1], ARGV[2]); "
+            + "else"
+            + "    return nil; "
+            + "end; ");
+
+    /**
+     * Delete if key is existed and equal with the specified value(locker), and publish the release signal to the
+     * channel ARGV[2].
+     */
+    private static final RedisScript UNLOCK_SCRIPT = new RedisScript(
+              "if (redis.call('get', KEYS[1]) == ARGV[1]) then "
+            + "    redis.call('del', KEYS[1]); "
+            + "    redis.call('publish', ARGV[2], '1'); "
+            + "    return 1; "
+            + "else "
+            + "    return nil; "
+            + "end;");
+
+    /**
+     * Unlock all the keys, KEYS: locks; ARGV: locker & release channel of each key.<br>
+     * Delete the keys equal with the locker and publish the release signals, returns the indexes(1-based) of the
+     * lost keys.
+     */
+    private static final RedisScript UNLOCK_ALL_SCRIPT = new RedisScript(
+              "local lost = {}; "
+            + "for i = 1, #KEYS do "
+            + "    if (redis.call('get', KEYS[i]) == ARGV[2 * i - 1]) then "
+            + "        redis.call('del', KEYS[i]); "
+            + "        redis.call('publish', ARGV[2 * i], '1'); "
+            + "    else "
+            + "        lost[#lost + 1] = i; "
+            + "    end; "
+            + "end; "
+            + "return lost;");
+
+    /**
+     * Suffix of the release channel
+     */
+    private static final String RELEASE_CHANNEL_SUFFIX = "RELEASED";
+
+    /**
+     * Suffixes of the fair queue keys, and the ticket timeout factor of the lease
+     */
+    private static final String QUEUE_KEY_SUFFIX = "QUEUE";
+    private static final String TIMEOUT_KEY_SUFFIX = "TIMEOUT";
+    private static final int TICKET_TIMEOUT_FACTOR = 3;
+
+    /**
+     * Purge the timeout tickets, KEYS: lock, queue, timeout; ARGV[3]: now
+     */
+    private static final String PURGE_TICKETS_SCRIPT =
+              "local now = tonumber(ARGV[3]); "
+            + "local timeouts = redis.call('zrangebyscore', KEYS[3], '-inf', now); "
+            + "for i = 1, #timeouts do "
+            + "    redis.call('zrem', KEYS[2], timeouts[i]); "
+            + "end; "
+            + "if (#timeouts > 0) then "
+            + "    redis.call('zremrangebyscore', KEYS[3], '-inf', now); "
+            + "end; ";
+
+    /**
+     * Fair lock, KEYS: lock, queue, timeout; ARGV: locker, lease, now, ticket timeout, enqueue flag.<br>
+     * Acquire if the lock is handed over to the locker, or it is free and the locker is the first ticket. Otherwise
+     * enqueue the locker(if the flag is set) and refresh its ticket timeout. The locker is the ticket of one waiter,
+     * so that only that waiter takes the handed over lock.
+     */
+    private static final RedisScript FAIR_LOCK_SCRIPT = new RedisScript(PURGE_TICKETS_SCRIPT
+            + "local owner = redis.call('get', KEYS[1]); "
+            + "if (owner == ARGV[1]) then "
+            + "    redis.call('pexpire', KEYS[1], ARGV[2]); "
+            + "    return 1; "
+            + "end; "
+            + "if (owner == false) then "
+            + "    local first = redis.call('zrange', KEYS[2], 0, 0)[1]; "
+            + "    if (first == nil or first == ARGV[1]) then "
+            + "        redis.call('set', KEYS[1], ARGV[1], 'PX', ARGV[2]); "
+            + "        redis.call('zrem', KEYS[2], ARGV[1]); "
+            + "        redis.call('zrem', KEYS[3], ARGV[1]); "
+            + "        return 1; "
+            + "    end; "
+            + "end; "
+            + "if (ARGV[5] == '1') then "
+            + "    if (redis.call('zscore', KEYS[2], ARGV[1]) == false) then "
+            + "        local last = redis.call('zrange', KEYS[2], -1, -1, 'withscores'); "
+            + "        local seq = 1; "
+            + "        if (last[2] ~= nil) then "
+            + "            seq = tonumber(last[2]) + 1; "
+            + "        end; "
+            + "        redis.call('zadd', KEYS[2], seq, ARGV[1]); "
+            + "    end; "
+            + "    redis.call('zadd', KEYS[3], now + tonumber(ARGV[4]), ARGV[1]); "
+            + "end; "
+            + "return nil;");
+
+    /**
+     * Fair unlock, KEYS: lock, queue, timeout; ARGV: locker, lease, now.<br>
+     * Hand the lock over to the first ticket if existed, otherwise delete it.
+     */
+    private static final RedisScript FAIR_UNLOCK_SCRIPT = new RedisScript(
+              "if (redis.call('get', KEYS[1]) ~= ARGV[1]) then "
+            + "    return nil; "
+            + "end; "
+            + PURGE_TICKETS_SCRIPT
+            + "local first = redis.call('zrange', KEYS[2], 0, 0)[1]; "
+            + "if (first ~= nil) then "
+            + "    redis.call('set', KEYS[1], first, 'PX', ARGV[2]); "
+            + "    redis.call('zrem', KEYS[2], first); "
+            + "    redis.call('zrem', KEYS[3], first); "
+            + "    return 2; "
+            + "end; "
+            + "return redis.call('del', KEYS[1]);");
+
+    /**
+     * Suffixes of the condition keys
+     */
+    private static final String CONDITION_KEY_PREFIX = "COND:";
+    private static final String CONDITION_WAITERS_SUFFIX = ":WAITERS";
+    private static final String CONDITION_SIGNALS_SUFFIX = ":SIGNALS";
+
+    /**
+     * TTL of the condition keys, renewed by the waiting waiters
+     */
+    private static final long CONDITION_KEY_TTL_MILLIS = 60 * 60 * 1000L;
+    private static final byte[] CONDITION_KEY_TTL_BYTES = SafeEncoder.encode(Long.toString(CONDITION_KEY_TTL_MILLIS));
+
+    /**
+     * Add condition waiter, KEYS: waiters; ARGV: ttl.<br>
+     * Increase the count of registered waiters and refresh its TTL.
+     */
+    private static final RedisScript ADD_WAITER_SCRIPT = new RedisScript(
+              "redis.call('incr', KEYS[1]); "
+            + "return redis.call('pexpire', KEYS[1], ARGV[1]);");
+
+    /**
+     * Signal condition, KEYS: waiters, signals; ARGV: all flag, ttl.<br>
+     * Push a token for one(or all) registered waiter, returns the count of signaled waiters.
+     */
+    private static final RedisScript SIGNAL_SCRIPT = new RedisScript(
+              "local waiters = tonumber(redis.call('get', KEYS[1]) or '0'); "
+            + "if (waiters <= 0) then "
+            + "    return 0; "
+            + "end; "
+            + "local n = 1; "
+            + "if (ARGV[1] == '1') then "
+            + "    n = waiters; "
+            + "end; "
+            + "redis.call('decrby', KEYS[1], n); "
+            + "for i = 1, n do "
+            + "    redis.call('rpush', KEYS[2], '1'); "
+            + "end; "
+            + "redis.call('pexpire', KEYS[2], ARGV[2]); "
+            + "return n;");
+
+    /**
+     * Cancel condition waiter, KEYS: waiters, signals.<br>
+     * Unregister the waiter if it is not signaled(returns 0), otherwise consume the token for it(returns 1). It is not
+     * signaled(returns 0) either if the token is gone, e.g. the keys are expired.
+     */
+    private static final RedisScript CANCEL_WAITER_SCRIPT = new RedisScript(
+              "local waiters = tonumber(redis.call('get', KEYS[1]) or '0'); "
+            + "if (waiters > 0) then "
+            + "    redis.call('decr', KEYS[1]); "
+            + "    return 0; "
+            + "end; "
+            + "if (redis.call('lpop', KEYS[2])) then "
+            + "    return 1; "
+            + "end; "
+            + "return 0;");
+
+    /**
+     * All the scripts, which are preloaded at startup
+     */
+    private static final List<RedisScript> SCRIPTS = Arrays.asList(ACQUIRE_SCRIPT, CLAIM_SCRIPT, LEASE_ALL_SCRIPT,
+            LEASE_SCRIPT, UNLOCK_SCRIPT, UNLOCK_ALL_SCRIPT, FAIR_LOCK_SCRIPT, FAIR_UNLOCK_SCRIPT, ADD_WAITER_SCRIPT,
+            SIGNAL_SCRIPT, CANCEL_WAITER_SCRIPT);
 
     @Resource
     private JedisClient jedisClient;
 
+    /**
+     * Circuit breaker for the redis failures
+     */
+    private volatile CircuitBreaker circuitBreaker = new CircuitBreaker();
+
+    /**
+     * Subscriber of the release channels, created on the first subscription
+     */
+    private volatile RedisReleaseSubscriber releaseSubscriber;
+
+    /**
+     * Whether the scripts are preloaded by SCRIPT LOAD
+     */
+    private volatile boolean scriptsLoaded = false;
+
+    /**
+     * Preload the scripts, so that the first commands don't pay for the script compiling. The scripts are loaded
+     * again by the readiness check if redis is unavailable at startup.
+     */
+    @PostConstruct
+    public void init() {
+        try {
+            loadScripts();
+        } catch (Exception e) {
+            LOGGER.warn("Fail to preload the lua scripts, they are loaded by the first commands", e);
+        }
+    }
+
+    /**
+     * Ready if the circuit is not open, and redis answers the SCRIPT LOAD(until loaded) or PING command
+     */
+    @Override
+    public boolean isReady() {
+        if (circuitBreaker.getState() == CircuitBreaker.State.OPEN) {
+            return false;
+        }
+
+        try {
+            if (!scriptsLoaded) {
+                loadScripts();
+                return true;
+            }
+            return "PONG".equals(jedisClient.ping());
+
+        } catch (Exception e) {
+            LOGGER.warn("Redis is not ready", e);
+            return false;
+        }
+    }
+
     /**
      * Load by unique key. For redis implement, you can find locker & status from the result entity.
      *
      * @param uniqueKey key
      * @throws RedisProcessException if catch any exception from {@link redis.clients.jedis.Jedis}
+     * @throws CircuitOpenException if the circuit breaker is open
      */
     @Override
     public DLockEntity load(String uniqueKey) throws RedisProcessException {
         // GET command
+        acquirePermission(uniqueKey);
         String locker;
         try {
             locker = jedisClient.get(uniqueKey);
         } catch (Exception e) {
+            circuitBreaker.onFailure();
             LOGGER.warn("Exception occurred by GET command for key:" + uniqueKey, e);
             throw new RedisProcessException("Exception occurred by GET command for key:" + uniqueKey, e);
         }
+        circuitBreaker.onSuccess();
 
         if (locker == null) {
             return null;
@@ -84,35 +414,218 @@ public class RedisLockProcessor implements DLockProcessor {
     }
 
     /**
-     * Update for lock using redis SET(NX, PX) command.
+     * Load by the encoded key of lock configuration. The binary locker is decoded for compact encoding.
+     *
+     * @param lockConfig
+     * @throws RedisProcessException if catch any exception from {@link redis.clients.jedis.Jedis}
+     * @throws CircuitOpenException if the circuit breaker is open
+     */
+    @Override
+    public DLockEntity load(DLockConfig lockConfig) throws RedisProcessException {
+        // GET command
+        acquirePermission(lockConfig.getLockUniqueKey());
+        byte[] locker;
+        try {
+            locker = jedisClient.get(lockConfig.getLockUniqueKeyBytes());
+        } catch (Exception e) {
+            circuitBreaker.onFailure();
+            LOGGER.warn("Exception occurred by GET command for key:" + lockConfig.getLockUniqueKey(), e);
+            throw new RedisProcessException(
+                    "Exception occurred by GET command for key:" + lockConfig.getLockUniqueKey(), e);
+        }
+        circuitBreaker.onSuccess();
+
+        if (locker == null) {
+            return null;
+        }
+
+        return buildLockEntity(locker, lockConfig);
+    }
+
+    /**
+     * Load by the lock configurations in bulk. The keys are chunked by {@link #LOAD_ALL_CHUNK_SIZE}, and each chunk is
+     * loaded by pipelined MGET & PTTL commands in one round trip. The binary lockers are decoded for compact encoding.
+     *
+     * @param lockConfigs
+     * @throws RedisProcessException if catch any exception from {@link redis.clients.jedis.Jedis}
+     * @throws CircuitOpenException if the circuit breaker is open
+     */
+    @Override
+    public Map<String, DLockEntity> loadAll(Collection<DLockConfig> lockConfigs) throws RedisProcessException {
+        Map<String, DLockEntity> locks = new LinkedHashMap<>();
+        DLockConfig[] configs = lockConfigs.toArray(new DLockConfig[lockConfigs.size()]);
+
+        for (int from = 0; from < configs.length; from += LOAD_ALL_CHUNK_SIZE) {
+            int to = Math.min(from + LOAD_ALL_CHUNK_SIZE, configs.length);
+            byte[][] chunk = new byte[to - from][];
+            for (int i = 0; i < chunk.length; i++) {
+                chunk[i] = configs[from + i].getLockUniqueKeyBytes();
+            }
+
+            // MGET & PTTL commands
+            acquirePermission(configs[from].getLockUniqueKey());
+            List<Object> loadRes;
+            try {
+                loadRes = jedisClient.mgetWithPttl(chunk);
+            } catch (Exception e) {
+                circuitBreaker.onFailure();
+                LOGGER.warn("Exception occurred by MGET & PTTL command for keys:" + chunk.length, e);
+                throw new RedisProcessException("Exception occurred by MGET & PTTL command for keys:" + chunk.length,
+                        e);
+            }
+            circuitBreaker.onSuccess();
+
+            // build entities: lockers of MGET | PTTL of each key
+            List<?> lockers = (List<?>) loadRes.get(0);
+            long now = System.currentTimeMillis();
+            for (int i = 0; i < chunk.length; i++) {
+                Object locker = lockers.get(i);
+                if (locker == null) {
+                    continue;
+                }
+
+                DLockConfig lockConfig = configs[from + i];
+                DLockEntity lockEntity = buildLockEntity((byte[]) locker, lockConfig);
+
+                // the key may be expired between the commands, or has no expire
+                Object pttl = loadRes.get(i + 1);
+                if (pttl instanceof Long && (Long) pttl >= 0) {
+                    lockEntity.setExpireTime(now + (Long) pttl);
+                }
+                locks.put(lockConfig.getLockUniqueKey(), lockEntity);
+            }
+        }
+
+        return locks;
+    }
+
+    /**
+     * Update for lock using lua script. The script takes the lock if it is free, otherwise the current lock is
+     * retrieved in the same round trip.
      *
      * @param newLock with locker in it
      * @param lockConfig
      * @throws RedisProcessException Redis command execute exception
-     * @throws OptimisticLockingException the lock is hold by the other request.
+     * @throws CircuitOpenException if the circuit breaker is open
+     * @throws OptimisticLockingException the lock is hold by the other request, with the current lock(locker &
+     *         expire time) in it.
      */
     @Override
     public void updateForLock(DLockEntity newLock, DLockConfig lockConfig)
             throws RedisProcessException, OptimisticLockingException {
-        // SET(NX, PX) command
-        String lockRes;
+        if (lockConfig.isFair()) {
+            updateForFairLock(newLock, lockConfig, false);
+            return;
+        }
+
+        acquirePermission(lockConfig.getLockUniqueKey());
+        Object lockRes;
         try {
-            lockRes = jedisClient.set(lockConfig.getLockUniqueKey(), newLock.getLocker(), SET_ARG_NOT_EXIST,
-                    SET_ARG_EXPIRE, lockConfig.getMillisLease());
+            lockRes = evalScript(ACQUIRE_SCRIPT, EVAL_ONE_KEY, lockConfig.getLockUniqueKeyBytes(),
+                    encodeLocker(newLock), lockConfig.getMillisLeaseBytes());
 
         } catch (Exception e) {
-            LOGGER.warn("Exception occurred by SET(NX, PX) command for key:" + lockConfig.getLockUniqueKey(), e);
+            circuitBreaker.onFailure();
+            LOGGER.warn("Exception occurred by Acquire lua script for key:" + lockConfig.getLockUniqueKey(), e);
             throw new RedisProcessException(
-                    "Exception occurred by SET(NX, PX) command for key:" + lockConfig.getLockUniqueKey(), e);
+                    "Exception occurred by Acquire lua script for key:" + lockConfig.getLockUniqueKey(), e);
         }
+        circuitBreaker.onSuccess();
 
-        if (!RES_OK.equals(lockRes)) {
+        // list means lua return the current locker & PTTL
+        if (lockRes instanceof List) {
             LOGGER.warn("Fail to get lock for key:{} ,locker={}", lockConfig.getLockUniqueKey(), newLock.getLocker());
             throw new OptimisticLockingException(
-                    "Fail to get lock for key:" + lockConfig.getLockUniqueKey() + " ,locker=" + newLock.getLocker());
+                    "Fail to get lock for key:" + lockConfig.getLockUniqueKey() + " ,locker=" + newLock.getLocker(),
+                    buildCurrentLock((List<?>) lockRes, lockConfig));
+        }
+    }
+
+    /**
+     * Update for lock of the queued waiter. For fair lock, the waiter is enqueued if the lock is not acquired.
+     *
+     * @param newLock with locker in it
+     * @param lockConfig
+     * @throws RedisProcessException Redis command execute exception
+     * @throws CircuitOpenException if the circuit breaker is open
+     * @throws OptimisticLockingException the lock is hold by the other request, or the other waiter is prior.
+     */
+    @Override
+    public void updateForQueuedLock(DLockEntity newLock, DLockConfig lockConfig)
+            throws RedisProcessException, OptimisticLockingException {
+        if (lockConfig.isFair()) {
+            updateForFairLock(newLock, lockConfig, true);
+        } else {
+            updateForLock(newLock, lockConfig);
+        }
+    }
+
+    /**
+     * Update for fair lock using lua script, the waiter is enqueued if the enqueue flag is set.
+     */
+    private void updateForFairLock(DLockEntity newLock, DLockConfig lockConfig, boolean enqueue)
+            throws RedisProcessException, OptimisticLockingException {
+        acquirePermission(lockConfig.getLockUniqueKey());
+        Object lockRes;
+        try {
+            byte[] ticketTimeout = SafeEncoder.encode(
+                    Long.toString(lockConfig.getMillisLease() * TICKET_TIMEOUT_FACTOR));
+            lockRes = evalScript(FAIR_LOCK_SCRIPT, EVAL_THREE_KEYS, lockConfig.getLockUniqueKeyBytes(),
+                    lockConfig.deriveKeyBytes(QUEUE_KEY_SUFFIX), lockConfig.deriveKeyBytes(TIMEOUT_KEY_SUFFIX),
+                    encodeLocker(newLock), lockConfig.getMillisLeaseBytes(), currentTimeBytes(), ticketTimeout,
+                    enqueue ? FLAG_TRUE : FLAG_FALSE);
+
+        } catch (Exception e) {
+            circuitBreaker.onFailure();
+            LOGGER.warn("Exception occurred by FairLock lua script for key:" + lockConfig.getLockUniqueKey(), e);
+            throw new RedisProcessException(
+                    "Exception occurred by FairLock lua script for key:" + lockConfig.getLockUniqueKey(), e);
+        }
+        circuitBreaker.onSuccess();
+
+        // null means lua return nil (the lock is hold by the other request, or the other waiter is prior)
+        if (lockRes == null) {
+            LOGGER.warn("Fail to get fair lock for key:{} ,locker={}", lockConfig.getLockUniqueKey(),
+                    newLock.getLocker());
+            throw new OptimisticLockingException("Fail to get fair lock for key:" + lockConfig.getLockUniqueKey()
+                    + " ,locker=" + newLock.getLocker());
         }
     }
 
+    /**
+     * Claim any count of the locks using lua script in one round trip.
+     *
+     * @param newLock with the locker shared by the locks
+     * @param lockConfigs with the same lease & encoding
+     * @param count max count of the locks to acquire
+     * @throws RedisProcessException Redis command execute exception
+     * @throws CircuitOpenException if the circuit breaker is open
+     */
+    @Override
+    public List<DLockConfig> updateForClaim(DLockEntity newLock, List<DLockConfig> lockConfigs, int count)
+            throws RedisProcessException {
+        if (lockConfigs.isEmpty() || count <= 0) {
+            return new ArrayList<>(0);
+        }
+
+        String firstKey = lockConfigs.get(0).getLockUniqueKey();
+        acquirePermission(firstKey);
+        Object claimRes;
+        try {
+            byte[][] params = keysWithArgs(lockConfigs, encodeLocker(newLock),
+                    lockConfigs.get(0).getMillisLeaseBytes(), SafeEncoder.encode(Integer.toString(count)));
+            claimRes = evalScript(CLAIM_SCRIPT, lockConfigs.size(), params);
+
+        } catch (Exception e) {
+            circuitBreaker.onFailure();
+            LOGGER.warn("Exception occurred by Claim lua script for keys from:" + firstKey, e);
+            throw new RedisProcessException("Exception occurred by Claim lua script for keys from:" + firstKey, e);
+        }
+        circuitBreaker.onSuccess();
+
+        return selectByIndexes(lockConfigs, claimRes);
+    }
+
     /**
      * The redis expire mechanism guaranteed the expired key is removed automatic.
      * It is not necessary to check condition(status=1 && expire=true)
@@ -133,22 +646,16 @@ public class RedisLockProcessor implements DLockProcessor {
     @Override
     public void expandLockExpire(DLockEntity leaseLock, DLockConfig lockConfig)
             throws RedisProcessException, OptimisticLockingException {
-        // Expire if key is existed and equal with the specified value(locker).
-        String leaseScript = "if (redis.call('get', KEYS[1]) == ARGV[1]) then "
-                           + "    return redis.call('pexpire', KEYS[1], ARGV[2]); "
-                           + "else"
-                           + "    return nil; "
-                           + "end; ";
-
         Object leaseRes;
         try {
-            leaseRes = jedisClient.eval(leaseScript, Arrays.asList(lockConfig.getLockUniqueKey()),
-                    Arrays.asList(leaseLock.getLocker(), lockConfig.getMillisLease() + ""));
+            leaseRes = evalLeaseScript(LEASE_SCRIPT, EVAL_ONE_KEY, getLeaseParams(leaseLock, lockConfig));
         } catch (Exception e) {
+            circuitBreaker.onFailure();
             LOGGER.warn("Exception occurred by ExpandLease lua script for key:" + lockConfig.getLockUniqueKey(), e);
             throw new RedisProcessException(
                     "Exception occurred by ExpandLease lua script for key:" + lockConfig.getLockUniqueKey(), e);
         }
+        circuitBreaker.onSuccess();
 
         // null means lua return nil (the lock is released or be hold by the other request)
         if (leaseRes == null) {
@@ -159,7 +666,39 @@ public class RedisLockProcessor implements DLockProcessor {
     }
 
     /**
-     * Release lock using lua script.
+     * Extend lease for the locks with the same locker using lua script in one round trip.
+     *
+     * @param leaseLock with the locker shared by the locks
+     * @param lockConfigs with the same lease & encoding
+     * @throws RedisProcessException if catch any exception from {@link redis.clients.jedis.Jedis}
+     */
+    @Override
+    public List<DLockConfig> expandLockExpireAll(DLockEntity leaseLock, List<DLockConfig> lockConfigs)
+            throws RedisProcessException {
+        if (lockConfigs.isEmpty()) {
+            return new ArrayList<>(0);
+        }
+
+        String firstKey = lockConfigs.get(0).getLockUniqueKey();
+        Object leaseRes;
+        try {
+            byte[][] params = keysWithArgs(lockConfigs, encodeLocker(leaseLock),
+                    lockConfigs.get(0).getMillisLeaseBytes());
+            leaseRes = evalLeaseScript(LEASE_ALL_SCRIPT, lockConfigs.size(), params);
+
+        } catch (Exception e) {
+            circuitBreaker.onFailure();
+            LOGGER.warn("Exception occurred by ExpandLeaseAll lua script for keys from:" + firstKey, e);
+            throw new RedisProcessException("Exception occurred by ExpandLeaseAll lua script for keys from:" + firstKey,
+                    e);
+        }
+        circuitBreaker.onSuccess();
+
+        return selectByIndexes(lockConfigs, leaseRes);
+    }
+
+    /**
+     * Release lock using lua script. For fair lock, the lock is handed over to the first waiter.
      *
      * @param currentLock with locker in it
      * @param lockConfig
@@ -169,22 +708,22 @@ public class RedisLockProcessor implements DLockProcessor {
     @Override
     public void updateForUnlock(DLockEntity currentLock, DLockConfig lockConfig)
             throws RedisProcessException, OptimisticLockingException {
-        // Delete if key is existed and equal with the specified value(locker).
-        String unlockScript = "if (redis.call('get', KEYS[1]) == ARGV[1]) then "
-                            + "    return redis.call('del', KEYS[1]); "
-                            + "else "
-                            + "    return nil; "
-                            + "end;";
-
         Object unlockRes;
         try {
-            unlockRes = jedisClient.eval(unlockScript, Arrays.asList(lockConfig.getLockUniqueKey()),
-                    Arrays.asList(currentLock.getLocker()));
+            if (lockConfig.isFair()) {
+                unlockRes = evalLeaseScript(FAIR_UNLOCK_SCRIPT, EVAL_THREE_KEYS, lockConfig.getLockUniqueKeyBytes(),
+                        lockConfig.deriveKeyBytes(QUEUE_KEY_SUFFIX), lockConfig.deriveKeyBytes(TIMEOUT_KEY_SUFFIX),
+                        encodeLocker(currentLock), lockConfig.getMillisLeaseBytes(), currentTimeBytes());
+            } else {
+                unlockRes = evalLeaseScript(UNLOCK_SCRIPT, EVAL_ONE_KEY, getUnlockParams(currentLock, lockConfig));
+            }
         } catch (Exception e) {
+            circuitBreaker.onFailure();
             LOGGER.warn("Exception occurred by Unlock lua script for key:" + lockConfig.getLockUniqueKey(), e);
             throw new RedisProcessException(
                     "Exception occurred by Unlock lua script for key:" + lockConfig.getLockUniqueKey(), e);
         }
+        circuitBreaker.onSuccess();
 
         // null means lua return nil (the lock is released or be hold by the other request)
         if (unlockRes == null) {
@@ -194,10 +733,423 @@ public class RedisLockProcessor implements DLockProcessor {
         }
     }
 
+    /**
+     * Release the locks using lua script in one round trip. The fair locks are released one by one, for handing
+     * over to their waiters.
+     *
+     * @param currentLocks with locker in it, in the order of the configurations
+     * @param lockConfigs
+     * @throws RedisProcessException if catch any exception from {@link redis.clients.jedis.Jedis}
+     */
+    @Override
+    public List<DLockConfig> updateForUnlockAll(List<DLockEntity> currentLocks, List<DLockConfig> lockConfigs)
+            throws RedisProcessException {
+        List<DLockConfig> lost = new ArrayList<>();
+        List<DLockConfig> unfairConfigs = new ArrayList<>(lockConfigs.size());
+        List<byte[]> unlockArgs = new ArrayList<>(lockConfigs.size() * 2);
+        for (int i = 0; i < lockConfigs.size(); i++) {
+            DLockConfig lockConfig = lockConfigs.get(i);
+            if (lockConfig.isFair()) {
+                try {
+                    updateForUnlock(currentLocks.get(i), lockConfig);
+                } catch (OptimisticLockingException e) {
+                    lost.add(lockConfig);
+                }
+                continue;
+            }
+
+            // Locker | ReleaseChannel
+            byte[][] unlockParams = getUnlockParams(currentLocks.get(i), lockConfig);
+            unfairConfigs.add(lockConfig);
+            unlockArgs.add(unlockParams[1]);
+            unlockArgs.add(unlockParams[2]);
+        }
+
+        if (unfairConfigs.isEmpty()) {
+            return lost;
+        }
+
+        String firstKey = unfairConfigs.get(0).getLockUniqueKey();
+        Object unlockRes;
+        try {
+            byte[][] params = keysWithArgs(unfairConfigs, unlockArgs.toArray(new byte[unlockArgs.size()][]));
+            unlockRes = evalLeaseScript(UNLOCK_ALL_SCRIPT, unfairConfigs.size(), params);
+
+        } catch (Exception e) {
+            circuitBreaker.onFailure();
+            LOGGER.warn("Exception occurred by UnlockAll lua script for keys from:" + firstKey, e);
+            throw new RedisProcessException("Exception occurred by UnlockAll lua script for keys from:" + firstKey, e);
+        }
+        circuitBreaker.onSuccess();
+
+        lost.addAll(selectByIndexes(unfairConfigs, unlockRes));
+        return lost;
+    }
+
+    /**
+     * Register the condition waiter with lua script
+     *
+     * @throws RedisProcessException if catch any exception from {@link redis.clients.jedis.Jedis}
+     */
+    @Override
+    public void addConditionWaiter(DLockConfig lockConfig, String conditionName) throws RedisProcessException {
+        try {
+            evalScript(ADD_WAITER_SCRIPT, EVAL_ONE_KEY,
+                    conditionKey(lockConfig, conditionName, CONDITION_WAITERS_SUFFIX), CONDITION_KEY_TTL_BYTES);
+        } catch (Exception e) {
+            circuitBreaker.onFailure();
+            LOGGER.warn("Exception occurred by AddWaiter lua script for condition:" + conditionName, e);
+            throw new RedisProcessException(
+                    "Exception occurred by AddWaiter lua script for condition:" + conditionName, e);
+        }
+        circuitBreaker.onSuccess();
+    }
+
+    /**
+     * Renew the TTL of the condition waiters by PEXPIRE command
+     *
+     * @throws RedisProcessException if catch any exception from {@link redis.clients.jedis.Jedis}
+     */
+    @Override
+    public void renewConditionWaiter(DLockConfig lockConfig, String conditionName) throws RedisProcessException {
+        try {
+            jedisClient.pexpire(conditionKey(lockConfig, conditionName, CONDITION_WAITERS_SUFFIX),
+                    CONDITION_KEY_TTL_MILLIS);
+        } catch (Exception e) {
+            circuitBreaker.onFailure();
+            LOGGER.warn("Exception occurred by PEXPIRE command for condition:" + conditionName, e);
+            throw new RedisProcessException("Exception occurred by PEXPIRE command for condition:" + conditionName,
+                    e);
+        }
+        circuitBreaker.onSuccess();
+    }
+
+    /**
+     * Wait for the signal token by BLPOP command, the timeout of BLPOP is in seconds, so that the token is polled
+     * by LPOP command without blocking if the timeout is less than one second.
+     *
+     * @throws RedisProcessException if catch any exception from {@link redis.clients.jedis.Jedis}
+     */
+    @Override
+    public boolean awaitConditionSignal(DLockConfig lockConfig, String conditionName, long timeoutMillis)
+            throws RedisProcessException {
+        byte[] signalsKey = conditionKey(lockConfig, conditionName, CONDITION_SIGNALS_SUFFIX);
+        boolean signaled;
+        try {
+            int timeoutSeconds = (int) Math.min(Integer.MAX_VALUE, timeoutMillis / 1000);
+            if (timeoutSeconds > 0) {
+                List<byte[]> popped = jedisClient.blpop(timeoutSeconds, signalsKey);
+                signaled = popped != null && !popped.isEmpty();
+            } else {
+                signaled = jedisClient.lpop(signalsKey) != null;
+            }
+        } catch (Exception e) {
+            circuitBreaker.onFailure();
+            LOGGER.warn("Exception occurred by BLPOP command for condition:" + conditionName, e);
+            throw new RedisProcessException("Exception occurred by BLPOP command for condition:" + conditionName, e);
+        }
+        circuitBreaker.onSuccess();
+
+        return signaled;
+    }
+
+    /**
+     * Cancel the condition waiter with lua script
+     *
+     * @throws RedisProcessException if catch any exception from {@link redis.clients.jedis.Jedis}
+     */
+    @Override
+    public boolean cancelConditionWaiter(DLockConfig lockConfig, String conditionName) throws RedisProcessException {
+        Object cancelRes;
+        try {
+            cancelRes = evalScript(CANCEL_WAITER_SCRIPT, EVAL_TWO_KEYS,
+                    conditionKey(lockConfig, conditionName, CONDITION_WAITERS_SUFFIX),
+                    conditionKey(lockConfig, conditionName, CONDITION_SIGNALS_SUFFIX));
+        } catch (Exception e) {
+            circuitBreaker.onFailure();
+            LOGGER.warn("Exception occurred by CancelWaiter lua script for condition:" + conditionName, e);
+            throw new RedisProcessException(
+                    "Exception occurred by CancelWaiter lua script for condition:" + conditionName, e);
+        }
+        circuitBreaker.onSuccess();
+
+        return Long.valueOf(1).equals(cancelRes);
+    }
+
+    /**
+     * Signal the condition waiters with lua script
+     *
+     * @throws RedisProcessException if catch any exception from {@link redis.clients.jedis.Jedis}
+     */
+    @Override
+    public long signalCondition(DLockConfig lockConfig, String conditionName, boolean all)
+            throws RedisProcessException {
+        Object signalRes;
+        try {
+            signalRes = evalScript(SIGNAL_SCRIPT, EVAL_TWO_KEYS,
+                    conditionKey(lockConfig, conditionName, CONDITION_WAITERS_SUFFIX),
+                    conditionKey(lockConfig, conditionName, CONDITION_SIGNALS_SUFFIX), all ? FLAG_TRUE : FLAG_FALSE,
+                    CONDITION_KEY_TTL_BYTES);
+        } catch (Exception e) {
+            circuitBreaker.onFailure();
+            LOGGER.warn("Exception occurred by Signal lua script for condition:" + conditionName, e);
+            throw new RedisProcessException("Exception occurred by Signal lua script for condition:" + conditionName,
+                    e);
+        }
+        circuitBreaker.onSuccess();
+
+        return signalRes instanceof Long ? (Long) signalRes : 0;
+    }
+
+    /**
+     * Remaining lease of the lock by PTTL command
+     *
+     * @throws RedisProcessException if catch any exception from {@link redis.clients.jedis.Jedis}
+     * @throws CircuitOpenException if the circuit breaker is open
+     */
+    @Override
+    public long getRemainingLease(DLockConfig lockConfig) throws RedisProcessException {
+        // PTTL command
+        acquirePermission(lockConfig.getLockUniqueKey());
+        Long pttl;
+        try {
+            pttl = jedisClient.pttl(lockConfig.getLockUniqueKeyBytes());
+        } catch (Exception e) {
+            circuitBreaker.onFailure();
+            LOGGER.warn("Exception occurred by PTTL command for key:" + lockConfig.getLockUniqueKey(), e);
+            throw new RedisProcessException(
+                    "Exception occurred by PTTL command for key:" + lockConfig.getLockUniqueKey(), e);
+        }
+        circuitBreaker.onSuccess();
+
+        // -2 means the key is not existed, -1 means the key has no expire
+        if (pttl == null || pttl == -2) {
+            return 0;
+        }
+        return pttl < 0 ? Long.MAX_VALUE : pttl;
+    }
+
+    /**
+     * Subscribe the release channel by the shared {@link RedisReleaseSubscriber}
+     */
+    @Override
+    public boolean subscribeRelease(DLockConfig lockConfig, Runnable listener) {
+        getReleaseSubscriber().subscribe(lockConfig.deriveKeyBytes(RELEASE_CHANNEL_SUFFIX), listener);
+        return true;
+    }
+
+    @Override
+    public void unsubscribeRelease(DLockConfig lockConfig, Runnable listener) {
+        RedisReleaseSubscriber subscriber = releaseSubscriber;
+        if (subscriber != null) {
+            subscriber.unsubscribe(lockConfig.deriveKeyBytes(RELEASE_CHANNEL_SUFFIX), listener);
+        }
+    }
+
+    /**
+     * Close the release subscriber
+     */
+    @PreDestroy
+    public void destroy() {
+        RedisReleaseSubscriber subscriber = releaseSubscriber;
+        if (subscriber != null) {
+            subscriber.close();
+        }
+    }
+
     @Override
     public boolean isLockFree(String uniqueKey) {
         DLockEntity locked = this.load(uniqueKey);
         return locked == null;
     }
 
+    @Override
+    public boolean isLockFree(DLockConfig lockConfig) {
+        DLockEntity locked = this.load(lockConfig);
+        return locked == null;
+    }
+
+    /**
+     * Getter & Setter of the circuit breaker
+     */
+    public CircuitBreaker getCircuitBreaker() {
+        return circuitBreaker;
+    }
+
+    public void setCircuitBreaker(CircuitBreaker circuitBreaker) {
+        this.circuitBreaker = circuitBreaker;
+    }
+
+    /**
+     * Build the script params: Keys of the locks | Args
+     */
+    private static byte[][] keysWithArgs(List<DLockConfig> lockConfigs, byte[]... args) {
+        byte[][] params = new byte[lockConfigs.size() + args.length][];
+        for (int i = 0; i < lockConfigs.size(); i++) {
+            params[i] = lockConfigs.get(i).getLockUniqueKeyBytes();
+        }
+        System.arraycopy(args, 0, params, lockConfigs.size(), args.length);
+        return params;
+    }
+
+    /**
+     * Select the lock configurations by the indexes(1-based) returned from lua script
+     */
+    private static List<DLockConfig> selectByIndexes(List<DLockConfig> lockConfigs, Object indexes) {
+        List<DLockConfig> selected = new ArrayList<>();
+        if (indexes instanceof List) {
+            for (Object index : (List<?>) indexes) {
+                selected.add(lockConfigs.get(((Long) index).intValue() - 1));
+            }
+        }
+        return selected;
+    }
+
+    /**
+     * Build the entity by the binary locker, which is decoded for compact encoding
+     */
+    private static DLockEntity buildLockEntity(byte[] locker, DLockConfig lockConfig) {
+        DLockEntity lockEntity = new DLockEntity();
+        if (lockConfig.getEncoding() == DLockEncoding.COMPACT) {
+            lockEntity.setLocker(LockerUtils.decodeLocker(locker));
+            lockEntity.setLockerBytes(locker);
+        } else {
+            lockEntity.setLocker(SafeEncoder.encode(locker));
+        }
+        lockEntity.setLockStatus(DLockStatus.PROCESSING);
+
+        return lockEntity;
+    }
+
+    /**
+     * Build the current lock by the result of acquire script: Locker | PTTL. The lock time is the last lease time
+     * estimated by the expire time.
+     */
+    private static DLockEntity buildCurrentLock(List<?> lockRes, DLockConfig lockConfig) {
+        if (lockRes.size() < 2 || !(lockRes.get(0) instanceof byte[])) {
+            return null;
+        }
+        DLockEntity currentLock = buildLockEntity((byte[]) lockRes.get(0), lockConfig);
+
+        Object pttl = lockRes.get(1);
+        if (pttl instanceof Long && (Long) pttl >= 0) {
+            long expireTime = System.currentTimeMillis() + (Long) pttl;
+            currentLock.setExpireTime(expireTime);
+            currentLock.setLockTime(expireTime - lockConfig.getMillisLease());
+        }
+
+        return currentLock;
+    }
+
+    /**
+     * Eval the script by EVALSHA, and by EVAL if it is not cached(kind of redis restarted or SCRIPT FLUSH). The EVAL
+     * caches the script again.
+     */
+    private Object evalScript(RedisScript script, int keyCount, byte[]... params) {
+        try {
+            return jedisClient.evalsha(script.sha1, keyCount, params);
+        } catch (JedisDataException e) {
+            if (!RedisScript.isNoScript(e)) {
+                throw e;
+            }
+            return jedisClient.eval(script.script, keyCount, params);
+        }
+    }
+
+    /**
+     * Eval the lease or unlock script of the current holder, through the lease pool of {@link JedisClient}
+     */
+    private Object evalLeaseScript(RedisScript script, int keyCount, byte[]... params) {
+        try {
+            return jedisClient.leaseEvalsha(script.sha1, keyCount, params);
+        } catch (JedisDataException e) {
+            if (!RedisScript.isNoScript(e)) {
+                throw e;
+            }
+            return jedisClient.leaseEval(script.script, keyCount, params);
+        }
+    }
+
+    /**
+     * Load all the scripts by SCRIPT LOAD command
+     */
+    private void loadScripts() {
+        for (RedisScript script : SCRIPTS) {
+            jedisClient.scriptLoad(script.script);
+        }
+        scriptsLoaded = true;
+    }
+
+    private RedisReleaseSubscriber getReleaseSubscriber() {
+        RedisReleaseSubscriber subscriber = releaseSubscriber;
+        if (subscriber == null) {
+            synchronized (this) {
+                subscriber = releaseSubscriber;
+                if (subscriber == null) {
+                    subscriber = new RedisReleaseSubscriber(jedisClient);
+                    releaseSubscriber = subscriber;
+                }
+            }
+        }
+        return subscriber;
+    }
+
+    /**
+     * Acquire the permission of circuit breaker for the command
+     *
+     * @throws CircuitOpenException if the circuit is open
+     */
+    private void acquirePermission(String uniqueKey) throws CircuitOpenException {
+        if (!circuitBreaker.tryAcquirePermission()) {
+            throw new CircuitOpenException("Circuit is open, command is rejected for key:" + uniqueKey);
+        }
+    }
+
+    /**
+     * Derive the condition key: $LockUniqueKey:COND:$Name$Suffix
+     */
+    private static byte[] conditionKey(DLockConfig lockConfig, String conditionName, String suffix) {
+        return lockConfig.deriveKeyBytes(CONDITION_KEY_PREFIX + conditionName + suffix);
+    }
+
+    /**
+     * Current epoch millis as the script argument, the ticket timeout relies on the clocks of nodes
+     */
+    private static byte[] currentTimeBytes() {
+        return SafeEncoder.encode(Long.toString(System.currentTimeMillis()));
+    }
+
+    /**
+     * Encode the locker, the binary locker is used if existed
+     */
+    private byte[] encodeLocker(DLockEntity lock) {
+        return lock.getLockerBytes() != null ? lock.getLockerBytes() : SafeEncoder.encode(lock.getLocker());
+    }
+
+    /**
+     * Get the cached lease params: Key | Locker | MillisLease
+     */
+    private byte[][] getLeaseParams(DLockEntity lock, DLockConfig lockConfig) {
+        byte[][] params = lock.getLeaseParams();
+        if (params == null) {
+            params = new byte[][] {lockConfig.getLockUniqueKeyBytes(), encodeLocker(lock),
+                    lockConfig.getMillisLeaseBytes()};
+            lock.setLeaseParams(params);
+        }
+        return params;
+    }
+
+    /**
+     * Get the cached unlock params: Key | Locker | ReleaseChannel
+     */
+    private byte[][] getUnlockParams(DLockEntity lock, DLockConfig lockConfig) {
+        byte[][] params = lock.getUnlockParams();
+        if (params == null) {
+            params = new byte[][] {lockConfig.getLockUniqueKeyBytes(), encodeLocker(lock),
+                    lockConfig.deriveKeyBytes(RELEASE_CHANNEL_SUFFIX)};
+            lock.setUnlockParams(params);
+        }
+        return params;
+    }
+
 }
@@ -0,0 +1,221 @@
+/*
+ * Copyright (c) 2017 Baidu, Inc. All Rights Reserve.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.baidu.fsg.dlock.processor.impl;
+
+import java.nio.charset.StandardCharsets;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArraySet;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.baidu.fsg.dlock.jedis.JedisClient;
+
+import redis.clients.jedis.BinaryJedisPubSub;
+import redis.clients.util.SafeEncoder;
+
+/**
+ * Subscriber of the lock release channels. All the channels are subscribed by one dedicated connection of the
+ * subscriber thread, which is started by the first subscription and held until the subscriber is closed.<p>
+ *
+ * The connection always subscribes the control channel, so that it is never returned to the pool while the channels
+ * are subscribed(unsubscribed) on the fly. The channels changed before the subscription is confirmed are synchronized
+ * by the subscriber thread. If the connection is broken, all the channels are subscribed again after
+ * {@link #RESUBSCRIBE_INTERVAL_MILLIS}, the release signals are missed meanwhile.
+ *
+ * @author yutianbao
+ */
+public class RedisReleaseSubscriber implements Runnable {
+    private static final Logger LOGGER = LoggerFactory.getLogger(RedisReleaseSubscriber.class);
+
+    /**
+     * Control channel which is never published
+     */
+    private static final byte[] CONTROL_CHANNEL = SafeEncoder.encode("DLOCK:RELEASE:CONTROL");
+
+    /**
+     * Interval for subscribing again after the connection is broken
+     */
+    private static final long RESUBSCRIBE_INTERVAL_MILLIS = 1000;
+
+    private final JedisClient jedisClient;
+
+    /**
+     * Listeners of the channels, the channel bytes are mapped as ISO-8859-1 string
+     */
+    private final Map<String, Set<Runnable>> listeners = new ConcurrentHashMap<>();
+
+    /**
+     * Channels requested by the current connection, guarded by this
+     */
+    private final Set<String> requested = new HashSet<>();
+
+    private ReleasePubSub pubSub;
+    private Thread thread;
+    private boolean closed = false;
+
+    public RedisReleaseSubscriber(JedisClient jedisClient) {
+        this.jedisClient = jedisClient;
+    }
+
+    /**
+     * Add a listener of the channel
+     */
+    public synchronized void subscribe(byte[] channel, Runnable listener) {
+        if (closed) {
+            return;
+        }
+        listeners.computeIfAbsent(toName(channel), k -> new CopyOnWriteArraySet<>()).add(listener);
+
+        if (thread == null) {
+            thread = new Thread(this, "RedisReleaseSubscriber");
+            thread.setDaemon(true);
+            thread.start();
+        }
+        syncChannels();
+    }
+
+    /**
+     * Remove a listener of the channel, the channel is unsubscribed if no listener is left
+     */
+    public synchronized void unsubscribe(byte[] channel, Runnable listener) {
+        String name = toName(channel);
+        Set<Runnable> channelListeners = listeners.get(name);
+        if (channelListeners != null && channelListeners.remove(listener) && channelListeners.isEmpty()) {
+            listeners.remove(name);
+            syncChannels();
+        }
+    }
+
+    /**
+     * Close the subscriber, the connection is returned to the pool
+     */
+    public synchronized void close() {
+        closed = true;
+        listeners.clear();
+        syncChannels();
+        if (thread != null) {
+            thread.interrupt();
+        }
+    }
+
+    @Override
+    public void run() {
+        while (true) {
+            ReleasePubSub ps;
+            byte[][] channels;
+            synchronized (this) {
+                if (closed) {
+                    return;
+                }
+                ps = new ReleasePubSub();
+                pubSub = ps;
+                requested.clear();
+                requested.addAll(listeners.keySet());
+
+                channels = new byte[requested.size() + 1][];
+                channels[0] = CONTROL_CHANNEL;
+                int i = 1;
+                for (String name : requested) {
+                    channels[i++] = toBytes(name);
+                }
+            }
+
+            try {
+                // blocked until the subscriber is closed
+                jedisClient.subscribe(ps, channels);
+
+            } catch (Exception e) {
+                LOGGER.warn("Exception occurred by SUBSCRIBE command for release channels", e);
+                try {
+                    Thread.sleep(RESUBSCRIBE_INTERVAL_MILLIS);
+                } catch (InterruptedException ie) {
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Subscribe the new channels & unsubscribe the channels without listener(or all if closed), if the subscription
+     * is confirmed. Otherwise they are synchronized by the subscriber thread later.
+     */
+    private synchronized void syncChannels() {
+        if (pubSub == null || !pubSub.isSubscribed()) {
+            return;
+        }
+        if (closed) {
+            // unsubscribe all once, then the connection is returned to the pool
+            pubSub.unsubscribe();
+            pubSub = null;
+            return;
+        }
+
+        for (String name : listeners.keySet()) {
+            if (requested.add(name)) {
+                pubSub.subscribe(toBytes(name));
+            }
+        }
+        for (Iterator<String> it = requested.iterator(); it.hasNext(); ) {
+            String name = it.next();
+            if (!listeners.containsKey(name)) {
+                it.remove();
+                pubSub.unsubscribe(toBytes(name));
+            }
+        }
+    }
+
+    private static String toName(byte[] channel) {
+        return new String(channel, StandardCharsets.ISO_8859_1);
+    }
+
+    private static byte[] toBytes(String name) {
+        return name.getBytes(StandardCharsets.ISO_8859_1);
+    }
+
+    /**
+     * Dispatch the release messages to the listeners
+     */
+    private class ReleasePubSub extends BinaryJedisPubSub {
+
+        @Override
+        public void onMessage(byte[] channel, byte[] message) {
+            Set<Runnable> channelListeners = listeners.get(toName(channel));
+            if (channelListeners == null) {
+                return;
+            }
+            for (Runnable listener : channelListeners) {
+                try {
+                    listener.run();
+                } catch (RuntimeException e) {
+                    LOGGER.warn("Exception occurred by release listener", e);
+                }
+            }
+        }
+
+        @Override
+        public void onSubscribe(byte[] channel, int subscribedChannels) {
+            // the control channel is confirmed first, synchronize the channels changed while connecting
+            if (subscribedChannels == 1) {
+                syncChannels();
+            }
+        }
+    }
+}
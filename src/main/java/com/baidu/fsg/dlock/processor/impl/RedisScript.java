@@ -0,0 +1,72 @@
+/*
+ * Copyright (c) 2017 Baidu, Inc. All Rights Reserve.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.baidu.fsg.dlock.processor.impl;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+import redis.clients.jedis.exceptions.JedisDataException;
+import redis.clients.util.SafeEncoder;
+
+/**
+ * Lua script with its SHA1 digest. The script is invoked by EVALSHA, and sent by EVAL only if it is not cached by
+ * redis yet(NOSCRIPT error), so that the script body is neither sent nor hashed by redis for each command.
+ *
+ * @author yutianbao
+ */
+final class RedisScript {
+
+    /**
+     * Error prefix of EVALSHA if the script is not cached
+     */
+    private static final String NO_SCRIPT_PREFIX = "NOSCRIPT";
+
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+    /**
+     * Script body & SHA1 digest in lower case hex
+     */
+    final byte[] script;
+    final byte[] sha1;
+
+    RedisScript(String script) {
+        this.script = SafeEncoder.encode(script);
+        this.sha1 = SafeEncoder.encode(sha1Hex(this.script));
+    }
+
+    /**
+     * Whether the exception is caused by the script which is not cached
+     */
+    static boolean isNoScript(JedisDataException e) {
+        return e.getMessage() != null && e.getMessage().startsWith(NO_SCRIPT_PREFIX);
+    }
+
+    private static String sha1Hex(byte[] bytes) {
+        byte[] digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-1").digest(bytes);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-1 is not supported", e);
+        }
+
+        char[] hex = new char[digest.length * 2];
+        for (int i = 0; i < digest.length; i++) {
+            hex[i * 2] = HEX_DIGITS[(digest[i] >> 4) & 0xF];
+            hex[i * 2 + 1] = HEX_DIGITS[digest[i] & 0xF];
+        }
+        return new String(hex);
+    }
+}
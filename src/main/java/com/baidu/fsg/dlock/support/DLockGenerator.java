@@ -15,51 +15,92 @@
  */
 package com.baidu.fsg.dlock.support;
 
+import java.io.IOException;
+import java.net.URL;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Enumeration;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.Callable;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.locks.Lock;
 
 import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import javax.annotation.Resource;
 
-import org.apache.commons.collections.MapUtils;
 import org.apache.commons.lang.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.core.io.support.PropertiesLoaderUtils;
 import org.springframework.stereotype.Service;
 import org.springframework.util.Assert;
+import org.springframework.util.ClassUtils;
 
+import com.baidu.fsg.dlock.DLockRegistry;
+import com.baidu.fsg.dlock.DistributedLockClaim;
 import com.baidu.fsg.dlock.DistributedReentrantLock;
+import com.baidu.fsg.dlock.DistributedSingleFlight;
+import com.baidu.fsg.dlock.StripedDistributedLock;
 import com.baidu.fsg.dlock.domain.DLockConfig;
+import com.baidu.fsg.dlock.domain.DLockScope;
 import com.baidu.fsg.dlock.domain.DLockType;
 import com.baidu.fsg.dlock.processor.DLockProcessor;
-import com.baidu.fsg.dlock.utils.EnumUtils;
+import com.baidu.fsg.dlock.utils.LockerUtils;
 
 /**
  * DLockGenerator represents a generator for {@link DistributedReentrantLock} <br>
  * It will load the lease time of {@link DLockType} configured in file config-dlock.properties, key is DLockType Enum
- * name, value is lease time(ms). Sample as below:<p>
+ * name(or the free lock type name), value is lease time(ms). Sample as below:<p>
  * 
  * <code>CUSTOMER_LOCK=1000</code><br>
- * <code>XXXXXXXX_LOCK=2000</code>
+ * <code>XXXXXXXX_LOCK=2000</code><p>
+ *
+ * The configuration file is watched if it is located on the file system, and the lease config is reloaded once the
+ * file modified. The lease config is published as an immutable table indexed by DLockType ordinal, so that the lease
+ * lookup is an allocation-free array read.
  * 
  * @author yutianbao
  */
 @Service
 public class DLockGenerator {
+    private static final Logger LOGGER = LoggerFactory.getLogger(DLockGenerator.class);
 
     /** Default dlock configuration path */
     private static final String DEFAULT_CONF_PATH = "dlock/config-dlock.properties";
 
+    /**
+     * The modified configuration file is reloaded after no more event within the settle time(ms)
+     */
+    private static final long RELOAD_SETTLE_MILLIS = 200;
+
     @Resource
     private DLockProcessor lockProcessor;
 
     /**
-     * Key for DLockType enum, Value for lease time (ms)
+     * Single flight of the locked work, created on the first call
+     */
+    private volatile DistributedSingleFlight singleFlight;
+
+    /**
+     * Immutable lease table, swapped atomically while reloading
      */
-    private Map<DLockType, Integer> lockConfigMap = new HashMap<>();
+    private volatile LeaseTable leaseTable = new LeaseTable(new Properties());
 
     /**
      * dlock properties configuration file path
@@ -67,29 +108,121 @@ public class DLockGenerator {
     private String confPath;
 
     /**
-     * Load the lease config from properties, and init the lockConfigMap.
+     * Whether to watch & reload the configuration file, default as true
+     */
+    private boolean reloadable = true;
+
+    /**
+     * Watch service for the configuration file
+     */
+    private WatchService watchService;
+
+    /**
+     * Path of the lock table file shared by the processes on the host, the host coordination is disabled if blank.
+     * See {@link HostLockTable}
+     */
+    private String hostLockFile;
+
+    /**
+     * Host lock table, null if disabled
+     */
+    private HostLockTable hostLockTable;
+
+    /**
+     * Whether to install the JVM shutdown hook releasing all the held locks, default as false. The held locks of the
+     * lock processor are always released while the spring context is closed. See {@link DLockRegistry}
+     */
+    private boolean shutdownHook = false;
+
+    /**
+     * Immutable lease table. Leases of DLockType indexed by ordinal, and leases of free lock types keyed by name.
+     * Lease is zero if not configured.
+     */
+    static final class LeaseTable {
+        final int[] typeLeases = new int[DLockType.values().length];
+        final Map<String, Integer> namedLeases;
+        final Map<DLockType, Integer> lockConfigMap;
+
+        LeaseTable(Properties properties) {
+            Map<String, Integer> namedLeases = new HashMap<>();
+            Map<DLockType, Integer> lockConfigMap = new EnumMap<>(DLockType.class);
+
+            for (Entry<Object, Object> propEntry : properties.entrySet()) {
+                String lockTypeStr = propEntry.getKey().toString().trim();
+                Integer lease = Integer.valueOf(propEntry.getValue().toString().trim());
+                Assert.isTrue(lease > 0, "lease must greater than zero, lock type:" + lockTypeStr);
+
+                namedLeases.put(lockTypeStr, lease);
+                for (DLockType lockType : DLockType.values()) {
+                    if (lockType.name().equals(lockTypeStr)) {
+                        typeLeases[lockType.ordinal()] = lease;
+                        lockConfigMap.put(lockType, lease);
+                    }
+                }
+            }
+
+            this.namedLeases = Collections.unmodifiableMap(namedLeases);
+            this.lockConfigMap = Collections.unmodifiableMap(lockConfigMap);
+        }
+    }
+
+    /**
+     * Load the lease config from properties, and init the lease table.
      */
     @PostConstruct
     public void init() {
+        // resolve the local address & locker off the critical path of the first lock
+        prefetchLocker();
+
         try {
             // Using default path if no specified
             confPath = StringUtils.isBlank(confPath) ? DEFAULT_CONF_PATH : confPath;
 
             // Load lock config from properties
-            Properties properties = PropertiesLoaderUtils.loadAllProperties(confPath);
+            leaseTable = loadLeaseTable();
 
-            // Build the lockConfigMap
-            for (Entry<Object, Object> propEntry : properties.entrySet()) {
-                DLockType lockType = EnumUtils.valueOf(DLockType.class, propEntry.getKey().toString());
-                Integer lease = Integer.valueOf(propEntry.getValue().toString());
+        } catch (Exception e) {
+            throw new RuntimeException("Load distributed lock config fail", e);
+        }
 
-                if (lockType != null && lease != null) {
-                    lockConfigMap.put(lockType, lease);
-                }
+        if (reloadable) {
+            startConfigWatcher();
+        }
+
+        if (StringUtils.isNotBlank(hostLockFile)) {
+            try {
+                hostLockTable = new HostLockTable(hostLockFile);
+            } catch (IOException e) {
+                LOGGER.warn("Fail to open the host lock table, host coordination is disabled:" + hostLockFile, e);
             }
+        }
 
-        } catch (Exception e) {
-            throw new RuntimeException("Load distributed lock config fail", e);
+        if (shutdownHook) {
+            DLockRegistry.installShutdownHook();
+        }
+    }
+
+    /**
+     * Release the held locks in bulk, and stop watching the configuration file
+     */
+    @PreDestroy
+    public void destroy() {
+        DLockRegistry.releaseAll(lockProcessor);
+
+        if (watchService != null) {
+            try {
+                watchService.close();
+            } catch (IOException e) {
+                LOGGER.warn("Fail to close the watch service of dlock config", e);
+            }
+        }
+
+        if (hostLockTable != null) {
+            try {
+                hostLockTable.close();
+            } catch (IOException e) {
+                LOGGER.warn("Fail to close the host lock table", e);
+            }
         }
     }
 
@@ -101,11 +234,7 @@ public class DLockGenerator {
      * @return
      */
     public Lock gen(DLockType lockType, String lockTarget) {
-        // pre-check
-        Integer lease = lockConfigMap.get(lockType);
-        Assert.notNull(lease, "unfound config for DLockType:" + lockType);
-
-        return getLockInstance(lockType.name(), lockTarget, lease, TimeUnit.MILLISECONDS);
+        return getLockInstance(lockType.name(), lockTarget, getLease(lockType), TimeUnit.MILLISECONDS);
     }
 
     /**
@@ -124,6 +253,22 @@ public class DLockGenerator {
         return getLockInstance(lockType.name(), lockTarget, leaseTime, TimeUnit.MILLISECONDS);
     }
 
+    /**
+     * Get lock of a free lock type with a default lease time configured in the config-dlock.properties
+     *
+     * @param lockTypeStr
+     * @param lockTarget
+     * @return
+     */
+    public Lock gen(String lockTypeStr, String lockTarget) {
+        Integer lease = leaseTable.namedLeases.get(lockTypeStr);
+        if (lease == null) {
+            throw new IllegalArgumentException("unfound config for lock type:" + lockTypeStr);
+        }
+
+        return getLockInstance(lockTypeStr, lockTarget, lease, TimeUnit.MILLISECONDS);
+    }
+
     /**
      * A free way to make the instance of {@link DistributedReentrantLock}
      *
@@ -143,11 +288,209 @@ public class DLockGenerator {
     }
 
     /**
-     * Get lockConfigMap(unmodifiableMap)
+     * Get striped lock with a default lease time configured in the config-dlock.properties
+     *
+     * @param lockType enum DLockType
+     * @param stripeCount count of local stripes
+     * @return
+     */
+    public StripedDistributedLock genStriped(DLockType lockType, int stripeCount) {
+        StripedDistributedLock lock = new StripedDistributedLock(lockType.name(), getLease(lockType),
+                TimeUnit.MILLISECONDS, stripeCount, lockProcessor);
+        lock.setHostLockTable(hostLockTable);
+        return lock;
+    }
+
+    /**
+     * Claim up to the count of free partitions of the lock type in one round trip, the lease is configured in the
+     * config-dlock.properties. The claim can be called again for rebalancing, see {@link DistributedLockClaim}.
+     *
+     * @param lockType enum DLockType
+     * @param lockTargets partitions
+     * @param count max count of the partitions to claim
+     * @return the claim holding the claimed locks
+     */
+    public DistributedLockClaim claim(DLockType lockType, List<String> lockTargets, int count) {
+        return claim(lockType.name(), lockTargets, count, getLease(lockType), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Claim up to the count of free partitions of the free lock type in one round trip
+     *
+     * @param lockTypeStr
+     * @param lockTargets partitions
+     * @param count max count of the partitions to claim
+     * @param lease
+     * @param leaseTimeUnit
+     * @return the claim holding the claimed locks
+     */
+    public DistributedLockClaim claim(String lockTypeStr, List<String> lockTargets, int count, int lease,
+            TimeUnit leaseTimeUnit) {
+        // pre-check
+        Assert.isTrue(StringUtils.isNotEmpty(lockTypeStr), "lockTypeStr can't be empty!");
+        Assert.notEmpty(lockTargets, "lockTargets can't be empty!");
+        Assert.isTrue(lease > 0, "leaseTime must greater than zero!");
+        Assert.notNull(leaseTimeUnit, "leaseTimeUnit can't be null!");
+
+        List<DLockConfig> lockConfigs = new ArrayList<>(lockTargets.size());
+        for (String lockTarget : lockTargets) {
+            DLockConfig lockConfig = new DLockConfig(lockTypeStr, lockTarget, lease, leaseTimeUnit);
+            lockConfig.setLockScope(DLockScope.PROCESS);
+            lockConfigs.add(lockConfig);
+        }
+
+        DistributedLockClaim claim = new DistributedLockClaim(lockConfigs, lockProcessor);
+        claim.setHostLockTable(hostLockTable);
+        claim.claim(count);
+        return claim;
+    }
+
+    /**
+     * Run the locked work once for the concurrent callers of the same lock key in this process, the other callers
+     * wait for and share the result. See {@link DistributedSingleFlight}
+     *
+     * @param lockConfig
+     * @param work
+     * @return the result of the work
+     * @throws Exception the exception of the work
+     */
+    public <T> T executeOnce(DLockConfig lockConfig, Callable<T> work) throws Exception {
+        Assert.notNull(lockConfig, "lockConfig can't be null!");
+        Assert.notNull(work, "work can't be null!");
+
+        DistributedSingleFlight flight = singleFlight;
+        if (flight == null) {
+            synchronized (this) {
+                flight = singleFlight;
+                if (flight == null) {
+                    flight = new DistributedSingleFlight(lockProcessor);
+                    flight.setHostLockTable(hostLockTable);
+                    singleFlight = flight;
+                }
+            }
+        }
+        return flight.executeOnce(lockConfig, work);
+    }
+
+    /**
+     * Get lockConfigMap(unmodifiableMap) of the current lease table
      */
-    @SuppressWarnings("unchecked")
     public Map<DLockType, Integer> getLockConfigMap() {
-        return MapUtils.unmodifiableMap(lockConfigMap);
+        return leaseTable.lockConfigMap;
+    }
+
+    /**
+     * Get the configured lease(ms) of lock type
+     *
+     * @throws IllegalArgumentException if not configured
+     */
+    private int getLease(DLockType lockType) {
+        int lease = leaseTable.typeLeases[lockType.ordinal()];
+        if (lease <= 0) {
+            throw new IllegalArgumentException("unfound config for DLockType:" + lockType);
+        }
+        return lease;
+    }
+
+    /**
+     * Prefetch the locker in a daemon thread, which resolves the local address & instance id
+     */
+    private void prefetchLocker() {
+        Thread prefetchThread = new Thread(LockerUtils::getProcessLocker, "DLockLockerPrefetchThread");
+        prefetchThread.setDaemon(true);
+        prefetchThread.start();
+    }
+
+    /**
+     * Load lease table from the configuration file(s) in class path
+     */
+    private LeaseTable loadLeaseTable() throws IOException {
+        Properties properties = PropertiesLoaderUtils.loadAllProperties(confPath);
+        return new LeaseTable(properties);
+    }
+
+    /**
+     * Start a daemon thread watching the directories of the configuration files on file system
+     */
+    private void startConfigWatcher() {
+        Set<Path> confFiles = new HashSet<>();
+        try {
+            Enumeration<URL> urls = ClassUtils.getDefaultClassLoader().getResources(confPath);
+            while (urls.hasMoreElements()) {
+                URL url = urls.nextElement();
+                if ("file".equals(url.getProtocol())) {
+                    confFiles.add(Paths.get(url.toURI()).toAbsolutePath());
+                }
+            }
+
+            if (confFiles.isEmpty()) {
+                return;
+            }
+
+            watchService = FileSystems.getDefault().newWatchService();
+            for (Path confFile : confFiles) {
+                confFile.getParent().register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                        StandardWatchEventKinds.ENTRY_MODIFY);
+            }
+
+        } catch (Exception e) {
+            LOGGER.warn("Fail to watch dlock config:" + confPath + ", reload is disabled", e);
+            return;
+        }
+
+        Thread watchThread = new Thread(() -> watchConfig(confFiles), "DLockConfigWatchThread");
+        watchThread.setDaemon(true);
+        watchThread.start();
+    }
+
+    /**
+     * Reload the lease table once any configuration file modified, until the watch service closed
+     */
+    private void watchConfig(Set<Path> confFiles) {
+        while (true) {
+            WatchKey key;
+            try {
+                key = watchService.take();
+            } catch (InterruptedException | ClosedWatchServiceException e) {
+                return;
+            }
+
+            boolean modified = false;
+            for (WatchEvent<?> event : key.pollEvents()) {
+                Path dir = (Path) key.watchable();
+                if (event.context() instanceof Path && confFiles.contains(dir.resolve((Path) event.context()))) {
+                    modified = true;
+                }
+            }
+            key.reset();
+
+            if (modified) {
+                // the file may be written in several steps(kind of truncating first), reload once it is settled
+                try {
+                    awaitSettled();
+                } catch (InterruptedException | ClosedWatchServiceException e) {
+                    return;
+                }
+
+                try {
+                    leaseTable = loadLeaseTable();
+                    LOGGER.info("Reload dlock config:{}, leases:{}", confPath, leaseTable.namedLeases);
+                } catch (Exception e) {
+                    LOGGER.warn("Fail to reload dlock config:" + confPath + ", keep the previous config", e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Consume the events until no more event within the settle time
+     */
+    private void awaitSettled() throws InterruptedException {
+        WatchKey key;
+        while ((key = watchService.poll(RELOAD_SETTLE_MILLIS, TimeUnit.MILLISECONDS)) != null) {
+            key.pollEvents();
+            key.reset();
+        }
     }
 
     /**
@@ -155,7 +498,9 @@ public class DLockGenerator {
      */
     private Lock getLockInstance(String lockTypeStr, String lockTarget, int lease, TimeUnit leaseTimeUnit) {
         DLockConfig dlockConfig = new DLockConfig(lockTypeStr, lockTarget, lease, leaseTimeUnit);
-        return new DistributedReentrantLock(dlockConfig, lockProcessor);
+        DistributedReentrantLock lock = new DistributedReentrantLock(dlockConfig, lockProcessor);
+        lock.setHostLockTable(hostLockTable);
+        return lock;
     }
 
     /**
@@ -164,4 +509,16 @@ public class DLockGenerator {
     public void setConfPath(String confPath) {
         this.confPath = confPath;
     }
+
+    public void setReloadable(boolean reloadable) {
+        this.reloadable = reloadable;
+    }
+
+    public void setHostLockFile(String hostLockFile) {
+        this.hostLockFile = hostLockFile;
+    }
+
+    public void setShutdownHook(boolean shutdownHook) {
+        this.shutdownHook = shutdownHook;
+    }
 }
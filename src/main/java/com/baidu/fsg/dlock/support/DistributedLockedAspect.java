@@ -0,0 +1,211 @@
+/*
+ * Copyright (c) 2017 Baidu, Inc. All Rights Reserve.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.baidu.fsg.dlock.support;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.locks.Lock;
+
+import javax.annotation.Resource;
+
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.aspectj.lang.reflect.MethodSignature;
+import org.springframework.aop.support.AopUtils;
+import org.springframework.expression.EvaluationContext;
+import org.springframework.expression.Expression;
+import org.springframework.expression.spel.SpelCompilerMode;
+import org.springframework.expression.spel.SpelNode;
+import org.springframework.expression.spel.SpelParserConfiguration;
+import org.springframework.expression.spel.ast.VariableReference;
+import org.springframework.expression.spel.standard.SpelExpression;
+import org.springframework.expression.spel.standard.SpelExpressionParser;
+import org.springframework.expression.spel.support.StandardEvaluationContext;
+import org.springframework.stereotype.Component;
+import org.springframework.util.Assert;
+
+import com.baidu.fsg.dlock.annotation.DistributedLocked;
+import com.baidu.fsg.dlock.utils.ReflectionUtils;
+
+/**
+ * DistributedLockedAspect executes the method annotated with {@link DistributedLocked} with the distributed lock held.
+ * <p>
+ *
+ * The parsed SpEL expression and the argument variable names referenced by the expression are cached per method at
+ * the first invocation, and the expression is compiled once it is hot(MIXED compiler mode). So that the per-invocation
+ * overhead is only binding the referenced arguments, the key evaluation and the lock trip.<br>
+ * A nested or recursive call on the same lock type & target re-enters the lock held by the outer call of the thread,
+ * instead of generating another lock instance which would wait for the outer call forever.
+ *
+ * @author yutianbao
+ */
+@Aspect
+@Component
+public class DistributedLockedAspect {
+
+    /**
+     * SpEL parser, compiles the hot expressions with fallback to interpreter
+     */
+    private static final SpelExpressionParser PARSER = new SpelExpressionParser(
+            new SpelParserConfiguration(SpelCompilerMode.MIXED, DistributedLockedAspect.class.getClassLoader()));
+
+    /**
+     * Locks held by the annotated calls of the current thread, Key for the lock type & target
+     */
+    private static final ThreadLocal<Map<String, Lock>> HELD_LOCKS = ThreadLocal.withInitial(HashMap::new);
+
+    @Resource
+    private DLockGenerator lockGenerator;
+
+    /**
+     * Key for the method of call site, Value for the locked method metadata
+     */
+    private final ConcurrentMap<Method, LockedMethod> lockedMethodCache = new ConcurrentHashMap<>();
+
+    /**
+     * Cached metadata of the locked method
+     */
+    static class LockedMethod {
+        /**
+         * Source of key expression
+         */
+        final String keySource;
+        /**
+         * Parsed key expression
+         */
+        final Expression keyExpression;
+        /**
+         * Variable names of each argument referenced by the key expression, among name, p$index, a$index
+         */
+        final String[][] variableNames;
+
+        LockedMethod(String keySource, String[] parameterNames) {
+            this.keySource = keySource;
+            this.keyExpression = PARSER.parseExpression(keySource);
+            this.variableNames = new String[parameterNames.length][];
+
+            Set<String> referencedNames = new HashSet<>();
+            collectVariableNames(((SpelExpression) keyExpression).getAST(), referencedNames);
+
+            for (int i = 0; i < parameterNames.length; i++) {
+                List<String> names = new ArrayList<>(3);
+                for (String name : new String[] { parameterNames[i], "p" + i, "a" + i }) {
+                    if (name != null && referencedNames.contains(name)) {
+                        names.add(name);
+                    }
+                }
+                variableNames[i] = names.toArray(new String[names.size()]);
+            }
+        }
+
+        /**
+         * Collect the variable names referenced in the expression tree, the variable reference is kind of #name
+         */
+        private static void collectVariableNames(SpelNode node, Set<String> names) {
+            if (node instanceof VariableReference) {
+                names.add(node.toStringAST().substring(1));
+            }
+            for (int i = 0; i < node.getChildCount(); i++) {
+                collectVariableNames(node.getChild(i), names);
+            }
+        }
+    }
+
+    /**
+     * Lock around the annotated method
+     */
+    @Around("@annotation(distributedLocked)")
+    public Object around(ProceedingJoinPoint pjp, DistributedLocked distributedLocked) throws Throwable {
+        LockedMethod lockedMethod = getLockedMethod(pjp, distributedLocked);
+        String lockTarget = evaluateKey(lockedMethod, pjp.getArgs());
+
+        // re-enter the lock held by the outer call on the same thread
+        String heldKey = distributedLocked.type().name() + '_' + lockTarget;
+        Map<String, Lock> heldLocks = HELD_LOCKS.get();
+        Lock lock = heldLocks.get(heldKey);
+        boolean outermost = lock == null;
+        if (outermost) {
+            lock = distributedLocked.lease() > 0
+                    ? lockGenerator.gen(distributedLocked.type(), lockTarget, distributedLocked.lease())
+                    : lockGenerator.gen(distributedLocked.type(), lockTarget);
+        }
+
+        lock.lock();
+        if (outermost) {
+            heldLocks.put(heldKey, lock);
+        }
+        try {
+            return pjp.proceed();
+        } finally {
+            try {
+                lock.unlock();
+            } finally {
+                if (outermost) {
+                    heldLocks.remove(heldKey);
+                    if (heldLocks.isEmpty()) {
+                        HELD_LOCKS.remove();
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Get the cached metadata of the locked method, build it at the first invocation
+     */
+    private LockedMethod getLockedMethod(ProceedingJoinPoint pjp, DistributedLocked distributedLocked) {
+        Method method = ((MethodSignature) pjp.getSignature()).getMethod();
+
+        LockedMethod lockedMethod = lockedMethodCache.get(method);
+        if (lockedMethod != null && lockedMethod.keySource.equals(distributedLocked.key())) {
+            return lockedMethod;
+        }
+
+        // parameter names are discovered from the target class method, the interface method has no debug info
+        Method specificMethod = pjp.getTarget() != null
+                ? AopUtils.getMostSpecificMethod(method, pjp.getTarget().getClass()) : method;
+        lockedMethod = new LockedMethod(distributedLocked.key(), ReflectionUtils.getParameterNames(specificMethod));
+        lockedMethodCache.put(method, lockedMethod);
+
+        return lockedMethod;
+    }
+
+    /**
+     * Evaluate the lock target with method arguments
+     */
+    private String evaluateKey(LockedMethod lockedMethod, Object[] args) {
+        EvaluationContext context = new StandardEvaluationContext();
+        for (int i = 0; i < lockedMethod.variableNames.length && i < args.length; i++) {
+            for (String variableName : lockedMethod.variableNames[i]) {
+                context.setVariable(variableName, args[i]);
+            }
+        }
+
+        Object key = lockedMethod.keyExpression.getValue(context);
+        Assert.notNull(key, "lock key can't be null, key expression:" + lockedMethod.keySource);
+
+        return key.toString();
+    }
+
+}
@@ -0,0 +1,167 @@
+/*
+ * Copyright (c) 2017 Baidu, Inc. All Rights Reserve.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.baidu.fsg.dlock.support;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.util.Assert;
+
+import com.baidu.fsg.dlock.utils.LockerUtils;
+
+/**
+ * HostLockTable is a lock table shared by the processes on the same host, it is a memory-mapped file of fixed slots.
+ * The lock key is hashed to a slot, and the process holding the slot is the only competitor of the key on the host,
+ * so that the remote contention is reduced by the process count per host.<p>
+ *
+ * The slot is held by the exclusive file lock of its region, which is released by the OS once the process exits.
+ * The slot holder writes the key hash & pid into the mapped slot, the other processes read it to detect the hash
+ * collision: the slot held for the other key is bypassed, so that the key is never blocked by the other one.<p>
+ *
+ * Slot layout(16 bytes): <code>KeyHash(8 bytes) | Pid(4 bytes) | Reserved(4 bytes)</code><p>
+ *
+ * The table is an optimization only, it is bypassed for any I/O failure and the remote lock is still authoritative.
+ *
+ * @author yutianbao
+ */
+public class HostLockTable implements Closeable {
+    private static final Logger LOGGER = LoggerFactory.getLogger(HostLockTable.class);
+
+    /**
+     * Default slot count & the slot size
+     */
+    public static final int DEFAULT_SLOT_COUNT = 4096;
+    private static final int SLOT_SIZE = 16;
+    private static final int PID_OFFSET = 8;
+
+    /**
+     * Slot for the keys which are not coordinated by the table
+     */
+    public static final Slot BYPASS = new Slot(null, -1, null);
+
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+    private final int slotCount;
+
+    /**
+     * Constructor with the file path & default slot count
+     */
+    public HostLockTable(String path) throws IOException {
+        this(path, DEFAULT_SLOT_COUNT);
+    }
+
+    /**
+     * Constructor with the file path & slot count(power of two), the file is created if not existed. The processes
+     * on the host must use the same file & slot count.
+     */
+    public HostLockTable(String path, int slotCount) throws IOException {
+        Assert.isTrue(slotCount > 0 && (slotCount & (slotCount - 1)) == 0, "slotCount must be power of two!");
+
+        this.slotCount = slotCount;
+        this.channel = FileChannel.open(Paths.get(path), StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, (long) slotCount * SLOT_SIZE);
+    }
+
+    /**
+     * Try to hold the slot of the key without blocking
+     *
+     * @param lockUniqueKey
+     * @return the held slot, or {@link #BYPASS} if the slot is held for the other key(or any I/O failure),
+     *         or null if the key is held by the other competitor on the host
+     */
+    public Slot tryAcquire(String lockUniqueKey) {
+        long keyHash = hash(lockUniqueKey);
+        int index = (int) (keyHash ^ (keyHash >>> 32)) & (slotCount - 1);
+        int position = index * SLOT_SIZE;
+
+        FileLock fileLock;
+        try {
+            fileLock = channel.tryLock(position, SLOT_SIZE, false);
+        } catch (OverlappingFileLockException e) {
+            // held by the other competitor in this process
+            fileLock = null;
+        } catch (IOException e) {
+            LOGGER.warn("Fail to lock the host slot for key:" + lockUniqueKey, e);
+            return BYPASS;
+        }
+
+        if (fileLock == null) {
+            return buffer.getLong(position) == keyHash ? null : BYPASS;
+        }
+
+        buffer.putLong(position, keyHash);
+        buffer.putInt(position + PID_OFFSET, LockerUtils.getPid());
+        return new Slot(this, position, fileLock);
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * 64-bit FNV-1a hash of the key, never be zero(the free slot)
+     */
+    private static long hash(String lockUniqueKey) {
+        long h = 0xcbf29ce484222325L;
+        for (byte b : lockUniqueKey.getBytes(StandardCharsets.UTF_8)) {
+            h ^= b & 0xff;
+            h *= 0x100000001b3L;
+        }
+        return h == 0 ? 1 : h;
+    }
+
+    /**
+     * The held slot of the table
+     */
+    public static final class Slot {
+        private final HostLockTable table;
+        private final int position;
+        private final FileLock fileLock;
+
+        Slot(HostLockTable table, int position, FileLock fileLock) {
+            this.table = table;
+            this.position = position;
+            this.fileLock = fileLock;
+        }
+
+        /**
+         * Release the slot, it is no-op for {@link HostLockTable#BYPASS}
+         */
+        public void release() {
+            if (fileLock == null) {
+                return;
+            }
+
+            table.buffer.putLong(position, 0);
+            try {
+                fileLock.release();
+            } catch (IOException e) {
+                LOGGER.warn("Fail to release the host slot", e);
+            }
+        }
+    }
+}
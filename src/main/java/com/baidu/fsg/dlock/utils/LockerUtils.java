@@ -0,0 +1,224 @@
+/*
+ * Copyright (c) 2017 Baidu, Inc. All Rights Reserve.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.baidu.fsg.dlock.utils;
+
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * LockerUtils generates the locker(value of the remote lock record) which identifies the lock holder.<p>
+ *
+ * The locker is prefixed with a compact instance id generated at startup, which is 15 bytes as below:<br>
+ * <code>IP(4 bytes) | PID(4 bytes) | Epoch seconds(4 bytes) | Random(3 bytes)</code><br>
+ * The PID & epoch seconds are kept in full, so that the processes sharing one IP(containers behind NAT) are never
+ * mixed up by the truncated PID, and the restarted process with the same PID is distinguished by its start time. The
+ * random part covers the processes started within the same second. The instance id is encoded with URL-safe Base64
+ * (20 chars, no padding), so that the locker is short and fixed-length prefixed, fast to compare in Redis.<p>
+ *
+ * The binary locker(for compact encoding) is the binary instance id followed by the minimal big-endian bytes of the
+ * thread id, it can be decoded to the text locker by {@link #decodeLocker(byte[])}.<p>
+ *
+ * The thread id never changes during the life of a thread, so the lockers of each thread are generated once and
+ * cached in thread locals.<p>
+ *
+ * The lock instance of {@link com.baidu.fsg.dlock.domain.DLockScope#PROCESS} has its own locker, which is the instance
+ * id followed by a sequence with the sign bit set. So that it is distinct from the lockers of the other instances and
+ * the threads, and the instances of the same key never release or expand the remote lock of each other.
+ *
+ * @author yutianbao
+ */
+public abstract class LockerUtils {
+
+    /**
+     * Length of the instance id in bytes
+     */
+    public static final int INSTANCE_ID_LENGTH = 15;
+
+    /**
+     * Binary instance id
+     */
+    private static final byte[] INSTANCE_ID = generateInstanceId();
+
+    /**
+     * Encoded instance id, it is the process locker too
+     */
+    private static final String INSTANCE_ID_STR = Base64.getUrlEncoder().withoutPadding().encodeToString(INSTANCE_ID);
+
+    /**
+     * Sequence of the instance lockers
+     */
+    private static final AtomicLong INSTANCE_LOCKER_SEQUENCE = new AtomicLong();
+
+    /**
+     * Cached lockers of each thread
+     */
+    private static final ThreadLocal<String> THREAD_LOCKER = new ThreadLocal<String>() {
+        @Override
+        protected String initialValue() {
+            return INSTANCE_ID_STR + Long.toString(Thread.currentThread().getId(), Character.MAX_RADIX);
+        }
+    };
+    private static final ThreadLocal<byte[]> THREAD_LOCKER_BYTES = new ThreadLocal<byte[]>() {
+        @Override
+        protected byte[] initialValue() {
+            return encodeThreadLocker(Thread.currentThread().getId());
+        }
+    };
+
+    /**
+     * Retrieve the locker of current thread. InstanceID + ThreadID(radix 36)
+     *
+     * @return the thread locker
+     */
+    public static String getThreadLocker() {
+        return THREAD_LOCKER.get();
+    }
+
+    /**
+     * Retrieve the locker of current process. InstanceID
+     *
+     * @return the process locker
+     */
+    public static String getProcessLocker() {
+        return INSTANCE_ID_STR;
+    }
+
+    /**
+     * Retrieve the binary locker of current thread. InstanceID(15 bytes) + ThreadID(minimal bytes)<br>
+     * The returned array is shared by the current thread, don't modify it.
+     *
+     * @return the binary thread locker
+     */
+    public static byte[] getThreadLockerBytes() {
+        return THREAD_LOCKER_BYTES.get();
+    }
+
+    /**
+     * Retrieve the binary locker of current process. InstanceID(15 bytes)<br>
+     * The returned array is shared by the process, don't modify it.
+     *
+     * @return the binary process locker
+     */
+    public static byte[] getProcessLockerBytes() {
+        return INSTANCE_ID;
+    }
+
+    /**
+     * Generate a new binary locker for the lock instance. InstanceID(15 bytes) + Sequence(8 bytes, sign bit set)<br>
+     * The text locker is decoded by {@link #decodeLocker(byte[])}.
+     *
+     * @return the binary instance locker
+     */
+    public static byte[] newInstanceLockerBytes() {
+        return encodeThreadLocker(Long.MIN_VALUE | INSTANCE_LOCKER_SEQUENCE.incrementAndGet());
+    }
+
+    /**
+     * Decode the binary locker to text locker, returns null if it is not a binary locker
+     *
+     * @param lockerBytes
+     * @return the text locker
+     */
+    public static String decodeLocker(byte[] lockerBytes) {
+        if (lockerBytes == null || lockerBytes.length < INSTANCE_ID_LENGTH
+                || lockerBytes.length > INSTANCE_ID_LENGTH + 8) {
+            return null;
+        }
+
+        StringBuilder locker = new StringBuilder(Base64.getUrlEncoder().withoutPadding()
+                .encodeToString(Arrays.copyOf(lockerBytes, INSTANCE_ID_LENGTH)));
+        if (lockerBytes.length > INSTANCE_ID_LENGTH) {
+            long threadId = 0;
+            for (int i = INSTANCE_ID_LENGTH; i < lockerBytes.length; i++) {
+                threadId = (threadId << 8) | (lockerBytes[i] & 0xFF);
+            }
+            locker.append(Long.toString(threadId, Character.MAX_RADIX));
+        }
+        return locker.toString();
+    }
+
+    /**
+     * Retrieve a copy of the binary instance id
+     *
+     * @return the instance id
+     */
+    public static byte[] getInstanceId() {
+        return INSTANCE_ID.clone();
+    }
+
+    /**
+     * Retrieve the process id from the runtime name(pid@hostname), returns 0 if unresolved.
+     *
+     * @return the pid
+     */
+    public static int getPid() {
+        String runtimeName = ManagementFactory.getRuntimeMXBean().getName();
+        int index = runtimeName.indexOf('@');
+        if (index <= 0) {
+            return 0;
+        }
+
+        try {
+            return Integer.parseInt(runtimeName.substring(0, index));
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * Encode the binary thread locker: InstanceID(15 bytes) + ThreadID(minimal big-endian bytes). The negative id
+     * (instance locker sequence) takes 8 bytes.
+     */
+    private static byte[] encodeThreadLocker(long threadId) {
+        int threadIdLength = Math.max(1, (Long.SIZE - Long.numberOfLeadingZeros(threadId) + 7) / 8);
+
+        byte[] locker = new byte[INSTANCE_ID_LENGTH + threadIdLength];
+        System.arraycopy(INSTANCE_ID, 0, locker, 0, INSTANCE_ID_LENGTH);
+        for (int i = locker.length - 1; i >= INSTANCE_ID_LENGTH; i--, threadId >>>= 8) {
+            locker[i] = (byte) threadId;
+        }
+        return locker;
+    }
+
+    /**
+     * Generate the instance id: IP(4 bytes) | PID(4 bytes) | Epoch seconds(4 bytes) | Random(3 bytes)
+     */
+    private static byte[] generateInstanceId() {
+        // IPv6 address is folded into 4 bytes
+        byte[] address = NetUtils.getCachedLocalInetAddress().getAddress();
+        byte[] ip = new byte[4];
+        for (int i = 0; i < address.length; i++) {
+            ip[i % 4] ^= address[i];
+        }
+
+        int pid = getPid();
+        long epochSeconds = System.currentTimeMillis() / 1000;
+        int random = new SecureRandom().nextInt();
+
+        ByteBuffer buffer = ByteBuffer.allocate(INSTANCE_ID_LENGTH);
+        buffer.put(ip);
+        buffer.putInt(pid);
+        buffer.putInt((int) epochSeconds);
+        buffer.put((byte) (random >>> 16)).put((byte) (random >>> 8)).put((byte) random);
+
+        return buffer.array();
+    }
+
+}
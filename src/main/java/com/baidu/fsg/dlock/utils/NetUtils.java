@@ -15,44 +15,81 @@
  */
 package com.baidu.fsg.dlock.utils;
 
+import java.net.Inet4Address;
 import java.net.InetAddress;
 import java.net.NetworkInterface;
 import java.net.SocketException;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
 import java.util.Enumeration;
+import java.util.List;
+
+import org.apache.commons.lang.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 /**
- * NetUtils
+ * NetUtils<p>
+ *
+ * The local address is resolved lazily at the first access and cached. The resolution can be configured by the system
+ * properties below:<br>
+ * <li>dlock.local.address</li> the specified local address, skips the network interfaces enumeration
+ * <li>dlock.local.interface</li> the preferred network interface name, kind of eth0
+ * <li>dlock.local.cidr</li> the preferred CIDR(s) separated by comma, kind of 10.0.0.0/8,192.168.0.0/16
  * 
  * @author yutianbao
  */
 public abstract class NetUtils {
+    private static final Logger LOGGER = LoggerFactory.getLogger(NetUtils.class);
 
     /**
-     * Pre-loaded local address
+     * System property keys for local address resolution
      */
+    public static final String PROP_LOCAL_ADDRESS = "dlock.local.address";
+    public static final String PROP_LOCAL_INTERFACE = "dlock.local.interface";
+    public static final String PROP_LOCAL_CIDR = "dlock.local.cidr";
+
+    /**
+     * Local address
+     *
+     * @deprecated use {@link #getCachedLocalInetAddress()} instead. The address is no longer resolved at class
+     * loading, this field stays null until the first access of the cached local address.
+     */
+    @Deprecated
     public static InetAddress localAddress;
 
-    static {
-        try {
-            localAddress = getLocalInetAddress();
-        } catch (SocketException e) {
-            throw new RuntimeException("fail to get local ip.");
+    /**
+     * Lazily resolved local address, initialized at the first access of the holder
+     */
+    private static class LocalAddressHolder {
+        static final InetAddress LOCAL_ADDRESS = resolveLocalAddress();
+
+        static {
+            localAddress = LOCAL_ADDRESS;
         }
     }
 
     /**
-     * Retrieve the first validated local ip address(the Public and LAN ip addresses are validated).
+     * Retrieve the first validated local ip address(the Public and LAN ip addresses are validated), the preferred
+     * interface & CIDR are respected, and IPv4 address is preferred.
      *
      * @return the local address
      * @throws SocketException the socket exception
      */
     public static InetAddress getLocalInetAddress() throws SocketException {
+        String preferredInterface = System.getProperty(PROP_LOCAL_INTERFACE);
+        String[] preferredCidrs = StringUtils.split(System.getProperty(PROP_LOCAL_CIDR), ',');
+
         // enumerates all network interfaces
+        List<InetAddress> candidates = new ArrayList<>();
         Enumeration<NetworkInterface> enu = NetworkInterface.getNetworkInterfaces();
 
         while (enu.hasMoreElements()) {
             NetworkInterface ni = enu.nextElement();
-            if (ni.isLoopback()) {
+            if (ni.isLoopback() || !ni.isUp()) {
+                continue;
+            }
+            if (StringUtils.isNotBlank(preferredInterface) && !preferredInterface.trim().equals(ni.getName())) {
                 continue;
             }
 
@@ -64,12 +101,33 @@ public abstract class NetUtils {
                 if (address.isLinkLocalAddress() || address.isLoopbackAddress() || address.isAnyLocalAddress()) {
                     continue;
                 }
+                if (preferredCidrs != null && !matchesAnyCidr(address, preferredCidrs)) {
+                    continue;
+                }
+
+                candidates.add(address);
+            }
+        }
 
+        if (candidates.isEmpty()) {
+            throw new RuntimeException("No validated local address!");
+        }
+
+        for (InetAddress address : candidates) {
+            if (address instanceof Inet4Address) {
                 return address;
             }
         }
+        return candidates.get(0);
+    }
 
-        throw new RuntimeException("No validated local address!");
+    /**
+     * Retrieve the cached local address, resolved at the first access
+     *
+     * @return the local address
+     */
+    public static InetAddress getCachedLocalInetAddress() {
+        return LocalAddressHolder.LOCAL_ADDRESS;
     }
 
     /**
@@ -78,7 +136,126 @@ public abstract class NetUtils {
      * @return the string local address
      */
     public static String getLocalAddress() {
-        return localAddress.getHostAddress();
+        return getCachedLocalInetAddress().getHostAddress();
+    }
+
+    /**
+     * Whether the address matches the CIDR, kind of 10.0.0.0/8. The invalid CIDR never matches.
+     *
+     * @param address
+     * @param cidr
+     * @return true if matched
+     */
+    public static boolean matchesCidr(InetAddress address, String cidr) {
+        String[] parts = StringUtils.split(StringUtils.trimToEmpty(cidr), '/');
+        if (parts == null || parts.length == 0 || parts.length > 2) {
+            LOGGER.warn("Invalid CIDR:{}", cidr);
+            return false;
+        }
+
+        InetAddress networkAddress = parseAddressLiteral(parts[0]);
+        if (networkAddress == null) {
+            LOGGER.warn("Invalid CIDR:{}", cidr);
+            return false;
+        }
+        byte[] network = networkAddress.getAddress();
+
+        int prefix = network.length * 8;
+        if (parts.length > 1) {
+            try {
+                prefix = Integer.parseInt(parts[1].trim());
+            } catch (NumberFormatException e) {
+                prefix = -1;
+            }
+            if (prefix < 0 || prefix > network.length * 8) {
+                LOGGER.warn("Invalid CIDR:{}", cidr);
+                return false;
+            }
+        }
+
+        byte[] bytes = address.getAddress();
+        if (bytes.length != network.length) {
+            return false;
+        }
+
+        for (int i = 0; i < bytes.length && prefix > 0; i++, prefix -= 8) {
+            int mask = prefix >= 8 ? 0xFF : (0xFF << (8 - prefix)) & 0xFF;
+            if ((bytes[i] & mask) != (network[i] & mask)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean matchesAnyCidr(InetAddress address, String[] cidrs) {
+        for (String cidr : cidrs) {
+            if (matchesCidr(address, cidr)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Parse the IPv4 or IPv6 address literal, the host name is not accepted so as to avoid any DNS lookup
+     *
+     * @param literal
+     * @return the address, null if not a validated literal
+     */
+    private static InetAddress parseAddressLiteral(String literal) {
+        String text = StringUtils.trimToEmpty(literal);
+        try {
+            // IPv6 literal made up of hex digits, colons and dots is parsed locally by the InetAddress
+            if (text.indexOf(':') >= 0) {
+                return StringUtils.containsOnly(text, "0123456789abcdefABCDEF:.") ? InetAddress.getByName(text) : null;
+            }
+
+            String[] segments = StringUtils.splitPreserveAllTokens(text, '.');
+            if (segments == null || segments.length != 4) {
+                return null;
+            }
+            byte[] bytes = new byte[4];
+            for (int i = 0; i < segments.length; i++) {
+                if (segments[i].isEmpty() || segments[i].length() > 3 || !StringUtils.isNumeric(segments[i])) {
+                    return null;
+                }
+                int value = Integer.parseInt(segments[i]);
+                if (value > 255) {
+                    return null;
+                }
+                bytes[i] = (byte) value;
+            }
+            return InetAddress.getByAddress(bytes);
+        } catch (UnknownHostException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Resolve local address: the specified address first, then the network interfaces, and fall back to the local
+     * host address if no validated address.
+     */
+    private static InetAddress resolveLocalAddress() {
+        String specified = System.getProperty(PROP_LOCAL_ADDRESS);
+        if (StringUtils.isNotBlank(specified)) {
+            InetAddress address = parseAddressLiteral(specified);
+            if (address != null) {
+                return address;
+            }
+            LOGGER.warn("Invalid specified local address:{}, only the IP literal is supported", specified);
+        }
+
+        try {
+            return getLocalInetAddress();
+        } catch (Exception e) {
+            LOGGER.warn("Fail to get local ip from network interfaces, fall back to local host", e);
+        }
+
+        try {
+            return InetAddress.getLocalHost();
+        } catch (UnknownHostException e) {
+            return InetAddress.getLoopbackAddress();
+        }
     }
 
 }
@@ -17,10 +17,14 @@ package com.baidu.fsg.dlock.utils;
 
 import java.lang.annotation.Annotation;
 import java.lang.reflect.Field;
+import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
 import java.util.LinkedList;
 import java.util.List;
 
+import org.springframework.core.DefaultParameterNameDiscoverer;
+import org.springframework.core.ParameterNameDiscoverer;
+
 /**
  * ReflectionUtils
  *
@@ -28,6 +32,11 @@ import java.util.List;
  */
 public abstract class ReflectionUtils {
 
+    /**
+     * Parameter name discoverer, by -parameters flag or debug info
+     */
+    private static final ParameterNameDiscoverer PARAMETER_NAME_DISCOVERER = new DefaultParameterNameDiscoverer();
+
     /**
      * Void
      */
@@ -93,4 +102,12 @@ public abstract class ReflectionUtils {
         return r;
     }
 
+    /**
+     * Parameter names of method, the name is null if it can't be discovered
+     */
+    public static String[] getParameterNames(Method method) {
+        String[] names = PARAMETER_NAME_DISCOVERER.getParameterNames(method);
+        return names != null ? names : new String[method.getParameterTypes().length];
+    }
+
 }
@@ -0,0 +1,93 @@
+package com.baidu.fsg.dlock;
+
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.Resource;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+
+import com.baidu.fsg.dlock.domain.DLockAcquireResult;
+import com.baidu.fsg.dlock.domain.DLockConfig;
+import com.baidu.fsg.dlock.processor.CircuitBreaker;
+import com.baidu.fsg.dlock.processor.impl.RedisLockProcessor;
+
+/**
+ * Test for {@link CircuitBreaker}
+ *
+ * @author yutianbao
+ */
+@RunWith(SpringJUnit4ClassRunner.class)
+@ContextConfiguration(locations = { "classpath:dlock/spring-dlock.xml" })
+public class CircuitBreakerTest {
+
+    @Resource
+    private RedisLockProcessor lockProcessor;
+
+    /**
+     * Case1: Test for the state transition: closed -> open -> half-open -> closed
+     */
+    @Test
+    public void testStateTransition() throws Exception {
+        CircuitBreaker circuitBreaker = new CircuitBreaker();
+        circuitBreaker.setMinimumCalls(4);
+        circuitBreaker.setOpenMillis(200);
+
+        // 1 failure of 4 calls, still closed
+        circuitBreaker.onSuccess();
+        circuitBreaker.onSuccess();
+        circuitBreaker.onSuccess();
+        circuitBreaker.onFailure();
+        Assert.assertEquals(CircuitBreaker.State.CLOSED, circuitBreaker.getState());
+
+        // 4 failures of 7 calls, open
+        circuitBreaker.onFailure();
+        circuitBreaker.onFailure();
+        circuitBreaker.onFailure();
+        Assert.assertEquals(CircuitBreaker.State.OPEN, circuitBreaker.getState());
+        Assert.assertFalse(circuitBreaker.tryAcquirePermission());
+
+        // only one probe is permitted after the open duration
+        Thread.sleep(300);
+        Assert.assertTrue(circuitBreaker.tryAcquirePermission());
+        Assert.assertEquals(CircuitBreaker.State.HALF_OPEN, circuitBreaker.getState());
+        Assert.assertFalse(circuitBreaker.tryAcquirePermission());
+
+        // probe failed, open again
+        circuitBreaker.onFailure();
+        Assert.assertEquals(CircuitBreaker.State.OPEN, circuitBreaker.getState());
+
+        // probe succeeded, closed
+        Thread.sleep(300);
+        Assert.assertTrue(circuitBreaker.tryAcquirePermission());
+        circuitBreaker.onSuccess();
+        Assert.assertEquals(CircuitBreaker.State.CLOSED, circuitBreaker.getState());
+        Assert.assertTrue(circuitBreaker.tryAcquirePermission());
+    }
+
+    /**
+     * Case2: Test for the fast failing while the circuit is open
+     */
+    @Test
+    public void testFastFail() throws Exception {
+        CircuitBreaker circuitBreaker = new CircuitBreaker();
+        circuitBreaker.setMinimumCalls(1);
+        circuitBreaker.onFailure();
+
+        CircuitBreaker origin = lockProcessor.getCircuitBreaker();
+        lockProcessor.setCircuitBreaker(circuitBreaker);
+        try {
+            DLockConfig lockConfig = new DLockConfig("CUSTOMER_LOCK", "circuit", 1000, TimeUnit.MILLISECONDS);
+            DistributedReentrantLock lock = new DistributedReentrantLock(lockConfig, lockProcessor);
+
+            Assert.assertEquals(DLockAcquireResult.CIRCUIT_OPEN, lock.tryAcquire());
+            Assert.assertFalse(lock.tryLock());
+        } finally {
+            lockProcessor.setCircuitBreaker(origin);
+        }
+    }
+
+}
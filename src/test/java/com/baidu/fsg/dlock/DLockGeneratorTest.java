@@ -11,6 +11,8 @@ import org.springframework.test.context.ContextConfiguration;
 import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
 
 import javax.annotation.Resource;
+import java.io.File;
+import java.io.FileWriter;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.locks.Lock;
 
@@ -44,6 +46,43 @@ public class DLockGeneratorTest {
 
     }
 
+    @Test
+    public void testLeaseReload() throws Exception {
+        // write a config file in class path
+        File confFile = new File(getClass().getResource("/dlock").toURI().getPath(), "config-dlock-reload.properties");
+        writeConfig(confFile, "CUSTOMER_LOCK=1000\nFREE_LOCK=300\n");
+
+        DLockGenerator generator = new DLockGenerator();
+        generator.setConfPath("dlock/config-dlock-reload.properties");
+        generator.init();
+
+        try {
+            checkLock(generator.gen(DLockType.CUSTOMER_LOCK, "12345"), 1000);
+            checkLock(generator.gen("FREE_LOCK", "A_TARGET"), 300);
+
+            // modify lease config, it will be reloaded without restart
+            writeConfig(confFile, "CUSTOMER_LOCK=2000\nFREE_LOCK=600\n");
+
+            long start = System.currentTimeMillis();
+            while (!Integer.valueOf(2000).equals(generator.getLockConfigMap().get(DLockType.CUSTOMER_LOCK))
+                    && System.currentTimeMillis() - start < 10000) {
+                Thread.sleep(100);
+            }
+            checkLock(generator.gen(DLockType.CUSTOMER_LOCK, "12345"), 2000);
+            checkLock(generator.gen("FREE_LOCK", "A_TARGET"), 600);
+
+        } finally {
+            generator.destroy();
+            confFile.delete();
+        }
+    }
+
+    private void writeConfig(File confFile, String content) throws Exception {
+        try (FileWriter writer = new FileWriter(confFile)) {
+            writer.write(content);
+        }
+    }
+
     /**
      * Check lock
      */
@@ -0,0 +1,209 @@
+package com.baidu.fsg.dlock;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Condition;
+
+import javax.annotation.Resource;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+
+import com.baidu.fsg.dlock.domain.DLockConfig;
+import com.baidu.fsg.dlock.jedis.JedisClient;
+import com.baidu.fsg.dlock.processor.impl.RedisLockProcessor;
+
+/**
+ * Test for {@link DistributedCondition}
+ *
+ * @author yutianbao
+ */
+@RunWith(SpringJUnit4ClassRunner.class)
+@ContextConfiguration(locations = { "classpath:dlock/spring-dlock.xml" })
+public class DistributedConditionTest {
+
+    @Resource
+    private RedisLockProcessor lockProcessor;
+
+    @Resource
+    private JedisClient jedisClient;
+
+    /**
+     * Case1: Test for signal & signalAll, the waiters on server2 are waked up by server1
+     */
+    @Test
+    public void testSignal() throws Exception {
+        DLockConfig lockConfig = new DLockConfig("CUSTOMER_LOCK", "condition-signal", 1000, TimeUnit.MILLISECONDS);
+        DistributedReentrantLock lock1 = new DistributedReentrantLock(lockConfig, lockProcessor);
+        final DistributedReentrantLock lock2 = new DistributedReentrantLock(lockConfig, lockProcessor);
+        Condition condition1 = lock1.newCondition("notEmpty");
+        final Condition condition2 = lock2.newCondition("notEmpty");
+
+        final AtomicInteger signaled = new AtomicInteger(0);
+        final CountDownLatch done = new CountDownLatch(3);
+        for (int i = 0; i < 3; i++) {
+            new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    lock2.lock();
+                    try {
+                        if (condition2.await(5, TimeUnit.SECONDS)) {
+                            signaled.incrementAndGet();
+                        }
+                        Assert.assertTrue(lock2.isHeldByCurrentThread());
+                    } catch (InterruptedException e) {
+                        // ignore
+                    } finally {
+                        lock2.unlock();
+                        done.countDown();
+                    }
+                }
+            }).start();
+        }
+        Thread.sleep(500);
+
+        // wake up one waiter
+        lock1.lock();
+        try {
+            condition1.signal();
+        } finally {
+            lock1.unlock();
+        }
+
+        Thread.sleep(500);
+        Assert.assertEquals(1, signaled.get());
+
+        // wake up the others
+        lock1.lock();
+        try {
+            condition1.signalAll();
+        } finally {
+            lock1.unlock();
+        }
+
+        Assert.assertTrue(done.await(3, TimeUnit.SECONDS));
+        Assert.assertEquals(3, signaled.get());
+    }
+
+    /**
+     * Case2: Test for await timeout, the waiter is unregistered and the lock is re-acquired
+     */
+    @Test
+    public void testAwaitTimeout() throws Exception {
+        DLockConfig lockConfig = new DLockConfig("CUSTOMER_LOCK", "condition-timeout", 1000, TimeUnit.MILLISECONDS);
+        DistributedReentrantLock lock = new DistributedReentrantLock(lockConfig, lockProcessor);
+        Condition condition = lock.newCondition();
+
+        lock.lock();
+        lock.lock();
+        try {
+            long start = System.currentTimeMillis();
+            Assert.assertFalse(condition.await(300, TimeUnit.MILLISECONDS));
+            long elapsed = System.currentTimeMillis() - start;
+            Assert.assertTrue(elapsed >= 300 && elapsed < 1000);
+            Assert.assertTrue(lock.isHeldByCurrentThread());
+
+            // no registered waiter is left
+            Assert.assertEquals(0, lockProcessor.signalCondition(lockConfig, "0", true));
+        } finally {
+            lock.unlock();
+        }
+
+        Assert.assertTrue(lock.isHeldByCurrentThread());
+        lock.unlock();
+        Assert.assertFalse(lock.isHeldByCurrentThread());
+    }
+
+    /**
+     * Case3: Test for the short timed waiting, the signal is received before the timeout, and the registered waiter
+     * expires
+     */
+    @Test
+    public void testShortAwaitSignal() throws Exception {
+        DLockConfig lockConfig = new DLockConfig("CUSTOMER_LOCK", "condition-short", 1000, TimeUnit.MILLISECONDS);
+        DistributedReentrantLock lock1 = new DistributedReentrantLock(lockConfig, lockProcessor);
+        final DistributedReentrantLock lock2 = new DistributedReentrantLock(lockConfig, lockProcessor);
+        Condition condition1 = lock1.newCondition("short");
+        final Condition condition2 = lock2.newCondition("short");
+
+        final AtomicInteger elapsed = new AtomicInteger(-1);
+        final CountDownLatch done = new CountDownLatch(1);
+        new Thread(() -> {
+            lock2.lock();
+            try {
+                long start = System.currentTimeMillis();
+                if (condition2.await(800, TimeUnit.MILLISECONDS)) {
+                    elapsed.set((int) (System.currentTimeMillis() - start));
+                }
+            } catch (InterruptedException e) {
+                // ignore
+            } finally {
+                lock2.unlock();
+                done.countDown();
+            }
+        }).start();
+        Thread.sleep(200);
+
+        Long ttl = jedisClient.pttl(lockConfig.deriveKeyBytes("COND:short:WAITERS"));
+        Assert.assertTrue(ttl != null && ttl > 0);
+
+        lock1.lock();
+        try {
+            condition1.signal();
+        } finally {
+            lock1.unlock();
+        }
+
+        Assert.assertTrue(done.await(2, TimeUnit.SECONDS));
+        Assert.assertTrue(elapsed.get() >= 0 && elapsed.get() < 600);
+    }
+
+    /**
+     * Case4: Test for the await timeout racing with the signal, the waiter reports signaled only if it consumed the
+     * signal, and the cancel without the signal token is not signaled
+     */
+    @Test
+    public void testAwaitTimeoutRacingSignal() throws Exception {
+        DLockConfig lockConfig = new DLockConfig("CUSTOMER_LOCK", "condition-race", 1000, TimeUnit.MILLISECONDS);
+        final DistributedReentrantLock lock = new DistributedReentrantLock(lockConfig, lockProcessor);
+        final Condition condition = lock.newCondition("race");
+
+        for (int i = 0; i < 5; i++) {
+            final AtomicInteger awaited = new AtomicInteger(-1);
+            final CountDownLatch done = new CountDownLatch(1);
+            new Thread(() -> {
+                lock.lock();
+                try {
+                    awaited.set(condition.await(300, TimeUnit.MILLISECONDS) ? 1 : 0);
+                } catch (InterruptedException e) {
+                    // ignore
+                } finally {
+                    lock.unlock();
+                    done.countDown();
+                }
+            }).start();
+
+            // signal around the deadline of the waiter
+            Thread.sleep(290 + i * 5);
+            long signaled = lockProcessor.signalCondition(lockConfig, "race", false);
+
+            Assert.assertTrue(done.await(2, TimeUnit.SECONDS));
+            Assert.assertEquals(signaled, awaited.get());
+
+            // neither the waiter nor the token is left
+            Assert.assertEquals(0, lockProcessor.signalCondition(lockConfig, "race", true));
+            Assert.assertFalse(lockProcessor.awaitConditionSignal(lockConfig, "race", 0));
+        }
+
+        // the token consumed by the other waiter is not reported as signaled
+        lockProcessor.addConditionWaiter(lockConfig, "race");
+        Assert.assertEquals(1, lockProcessor.signalCondition(lockConfig, "race", false));
+        Assert.assertTrue(lockProcessor.awaitConditionSignal(lockConfig, "race", 0));
+        Assert.assertFalse(lockProcessor.cancelConditionWaiter(lockConfig, "race"));
+    }
+
+}
@@ -0,0 +1,133 @@
+package com.baidu.fsg.dlock;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.annotation.Resource;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+
+import com.baidu.fsg.dlock.domain.DLockConfig;
+import com.baidu.fsg.dlock.jedis.JedisClient;
+import com.baidu.fsg.dlock.processor.DLockProcessor;
+import com.baidu.fsg.dlock.support.DLockGenerator;
+
+/**
+ * Test for {@link DistributedLockClaim}
+ *
+ * @author yutianbao
+ */
+@RunWith(SpringJUnit4ClassRunner.class)
+@ContextConfiguration(locations = { "classpath:dlock/spring-dlock.xml" })
+public class DistributedLockClaimTest {
+
+    private static final String LOCK_TYPE = "BATCH_PROCESS_LOCK";
+
+    @Resource
+    private DLockGenerator lockGenerator;
+
+    @Resource
+    private DLockProcessor lockProcessor;
+
+    @Resource
+    private JedisClient jedisClient;
+
+    /**
+     * Partitions
+     */
+    private final List<String> partitions = new ArrayList<>();
+
+    @Before
+    public void setup() {
+        partitions.clear();
+        for (int i = 0; i < 5; i++) {
+            String partition = "PARTITION_" + i;
+            partitions.add(partition);
+            jedisClient.del(new DLockConfig(LOCK_TYPE, partition, 1, TimeUnit.SECONDS).getLockUniqueKey());
+        }
+    }
+
+    /**
+     * Case1: Test for claiming the partitions by two workers, and rebalancing after release
+     */
+    @Test
+    public void testClaim() throws Exception {
+        DistributedLockClaim worker1 = lockGenerator.claim(LOCK_TYPE, partitions, 3, 400, TimeUnit.MILLISECONDS);
+        DistributedLockClaim worker2 = lockGenerator.claim(LOCK_TYPE, partitions, 3, 400, TimeUnit.MILLISECONDS);
+        Assert.assertEquals(3, worker1.getClaimedLocks().size());
+        Assert.assertEquals(2, worker2.getClaimedLocks().size());
+        Assert.assertTrue(worker2.claim(3).isEmpty());
+
+        // the leases are expanded by the shared renewal thread
+        Thread.sleep(1000);
+        Assert.assertEquals(3, worker1.getClaimedLocks().size());
+        for (DistributedReentrantLock lock : worker1.getClaimedLocks()) {
+            Assert.assertTrue(lock.isHeldRemotely());
+            Assert.assertFalse(lockProcessor.isLockFree(lock.getLockConfig()));
+        }
+
+        // take over the claimed lock locally, the partition is released by unlock
+        DistributedReentrantLock lock = worker1.getClaimedLocks().get(0);
+        Assert.assertTrue(lock.tryLock());
+        lock.unlock();
+        Assert.assertTrue(lockProcessor.isLockFree(lock.getLockConfig()));
+        Assert.assertEquals(2, worker1.getClaimedLocks().size());
+
+        // rebalance
+        worker1.releaseAll();
+        Assert.assertTrue(worker1.getClaimedLocks().isEmpty());
+        Assert.assertEquals(3, worker2.claim(5).size());
+        Assert.assertEquals(5, worker2.getClaimedLocks().size());
+
+        worker2.releaseAll();
+        for (String partition : partitions) {
+            Assert.assertTrue(lockProcessor.isLockFree(new DLockConfig(LOCK_TYPE, partition, 1, TimeUnit.SECONDS)));
+        }
+    }
+
+    /**
+     * Case2: Test for the partition re-acquired by lock() after releasing, it is not renewed by the claim, and the
+     * claimed ones are not reported as lost
+     */
+    @Test
+    public void testRenewAfterRelock() throws Exception {
+        DistributedLockClaim worker = lockGenerator.claim(LOCK_TYPE, partitions, 3, 1000, TimeUnit.MILLISECONDS);
+        List<DistributedReentrantLock> claimed = worker.getClaimedLocks();
+        Assert.assertEquals(3, claimed.size());
+
+        AtomicInteger lostCount = new AtomicInteger();
+        for (DistributedReentrantLock lock : claimed) {
+            lock.addLeaseListener((lockConfig, owner) -> lostCount.incrementAndGet());
+        }
+
+        // release the first partition, and re-acquire it with the locker of the lock instance
+        DistributedReentrantLock relocked = claimed.get(0);
+        Assert.assertTrue(relocked.tryLock());
+        relocked.unlock();
+        relocked.lock();
+        try {
+            Assert.assertEquals(2, worker.getClaimedLocks().size());
+
+            worker.renew(worker.getClaimedLocks());
+            Assert.assertEquals(0, lostCount.get());
+            Assert.assertTrue(relocked.isHeldRemotely());
+            for (DistributedReentrantLock lock : claimed) {
+                Assert.assertFalse(lockProcessor.isLockFree(lock.getLockConfig()));
+            }
+        } finally {
+            relocked.unlock();
+        }
+
+        worker.releaseAll();
+        for (String partition : partitions) {
+            Assert.assertTrue(lockProcessor.isLockFree(new DLockConfig(LOCK_TYPE, partition, 1, TimeUnit.SECONDS)));
+        }
+    }
+}
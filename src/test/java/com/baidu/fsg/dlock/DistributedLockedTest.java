@@ -0,0 +1,115 @@
+package com.baidu.fsg.dlock;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.annotation.Resource;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.aop.support.AopUtils;
+import org.springframework.stereotype.Service;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+
+import com.baidu.fsg.dlock.annotation.DistributedLocked;
+import com.baidu.fsg.dlock.domain.DLockType;
+
+/**
+ * Test for {@link DistributedLocked}
+ *
+ * @author yutianbao
+ */
+@RunWith(SpringJUnit4ClassRunner.class)
+@ContextConfiguration(locations = { "classpath:dlock/spring-dlock.xml" })
+public class DistributedLockedTest {
+
+    @Resource
+    private LockedCounter lockedCounter;
+
+    /**
+     * Case1: Test for multi threads with the lock target evaluated by argument name & index
+     */
+    @Test
+    public void testDistributedLocked() throws Exception {
+        Assert.assertTrue(AopUtils.isAopProxy(lockedCounter));
+
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            threads.add(new Thread(() -> {
+                for (int j = 0; j < 20; j++) {
+                    lockedCounter.increaseByName("locked-counter");
+                    lockedCounter.increaseByIndex(new Counter("locked-counter"));
+                }
+            }));
+        }
+
+        threads.forEach(t -> t.start());
+        for (Thread t : threads) {
+            t.join();
+        }
+
+        Assert.assertEquals(400, lockedCounter.getCount());
+    }
+
+    /**
+     * Case2: Test for the nested call with the same lock target, which re-enters the lock held by the outer call
+     */
+    @Test(timeout = 30000)
+    public void testNestedDistributedLocked() throws Exception {
+        int count = lockedCounter.getCount();
+        lockedCounter.increaseNested("nested-counter", lockedCounter);
+        Assert.assertEquals(count + 2, lockedCounter.getCount());
+
+        // the lock is released by the outermost call, so that another thread is able to lock it
+        Thread thread = new Thread(() -> lockedCounter.increaseByName("nested-counter"));
+        thread.start();
+        thread.join();
+        Assert.assertEquals(count + 3, lockedCounter.getCount());
+    }
+
+    /**
+     * Counter with id
+     */
+    public static class Counter {
+        private final String id;
+
+        Counter(String id) {
+            this.id = id;
+        }
+
+        public String getId() {
+            return id;
+        }
+    }
+
+    /**
+     * Counter service, guarded by the distributed lock
+     */
+    @Service
+    public static class LockedCounter {
+        int count;
+
+        @DistributedLocked(type = DLockType.CUSTOMER_LOCK, key = "#id")
+        public void increaseByName(String id) {
+            count++;
+        }
+
+        @DistributedLocked(type = DLockType.CUSTOMER_LOCK, key = "#p0.id", lease = 500)
+        public void increaseByIndex(Counter counter) {
+            count++;
+        }
+
+        @DistributedLocked(type = DLockType.CUSTOMER_LOCK, key = "#id")
+        public void increaseNested(String id, LockedCounter proxy) {
+            count++;
+            proxy.increaseByName(id);
+        }
+
+        public int getCount() {
+            return count;
+        }
+    }
+
+}
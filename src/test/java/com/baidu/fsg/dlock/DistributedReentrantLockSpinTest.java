@@ -0,0 +1,117 @@
+package com.baidu.fsg.dlock;
+
+import java.lang.reflect.Field;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.LockSupport;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.baidu.fsg.dlock.domain.DLockConfig;
+
+/**
+ * Test for the adaptive spinning of {@link DistributedReentrantLock}, the local owner is set directly so that no
+ * redis is required
+ *
+ * @author yutianbao
+ */
+public class DistributedReentrantLockSpinTest {
+
+    /**
+     * Case1: Test for the spin budget, the waiter gives up spinning on the owner which never releases, so that it
+     * parks instead
+     */
+    @Test
+    public void testSpinGivesUp() throws Exception {
+        DistributedReentrantLock lock = newLock("spin-give-up");
+
+        AtomicBoolean running = new AtomicBoolean(true);
+        Thread owner = new Thread(() -> {
+            while (running.get()) {
+                // busy, keep RUNNABLE
+            }
+        });
+        owner.start();
+        try {
+            setField(lock, "exclusiveOwnerThread", owner);
+
+            // the short average hold is spun for twice of it at most
+            setField(lock, "avgHoldNanos", TimeUnit.MICROSECONDS.toNanos(10));
+            long start = System.nanoTime();
+            Assert.assertFalse(lock.spinForRelease());
+            Assert.assertTrue(System.nanoTime() - start < TimeUnit.MILLISECONDS.toNanos(50));
+
+            // no spinning for the long or unknown hold
+            setField(lock, "avgHoldNanos", TimeUnit.MILLISECONDS.toNanos(1));
+            Assert.assertFalse(lock.spinForRelease());
+            setField(lock, "avgHoldNanos", -1L);
+            Assert.assertFalse(lock.spinForRelease());
+        } finally {
+            running.set(false);
+            owner.join();
+        }
+    }
+
+    /**
+     * Case2: Test for the owner not running, which is never spun for
+     */
+    @Test
+    public void testNoSpinForBlockedOwner() throws Exception {
+        DistributedReentrantLock lock = newLock("spin-blocked");
+
+        AtomicBoolean running = new AtomicBoolean(true);
+        Thread owner = new Thread(() -> {
+            while (running.get()) {
+                LockSupport.park(this);
+            }
+        });
+        owner.start();
+        try {
+            while (owner.getState() != Thread.State.WAITING) {
+                Thread.sleep(1);
+            }
+            setField(lock, "exclusiveOwnerThread", owner);
+            setField(lock, "avgHoldNanos", TimeUnit.MICROSECONDS.toNanos(10));
+            Assert.assertFalse(lock.spinForRelease());
+
+            // no owner
+            setField(lock, "exclusiveOwnerThread", null);
+            Assert.assertFalse(lock.spinForRelease());
+        } finally {
+            running.set(false);
+            LockSupport.unpark(owner);
+            owner.join();
+        }
+    }
+
+    /**
+     * Case3: Test for the spin wait hint, which is resolved since Java 9, and falls back to the busy spin
+     */
+    @Test
+    public void testOnSpinWaitFallback() throws Exception {
+        boolean supported;
+        try {
+            Thread.class.getMethod("onSpinWait");
+            supported = true;
+        } catch (NoSuchMethodException e) {
+            supported = false;
+        }
+
+        Field field = DistributedReentrantLock.class.getDeclaredField("ON_SPIN_WAIT");
+        field.setAccessible(true);
+        Assert.assertEquals(supported, field.get(null) != null);
+    }
+
+    private static DistributedReentrantLock newLock(String lockTarget) {
+        DLockConfig lockConfig = new DLockConfig("CUSTOMER_LOCK", lockTarget, 1000, TimeUnit.MILLISECONDS);
+        return new DistributedReentrantLock(lockConfig, null);
+    }
+
+    private static void setField(Object target, String name, Object value) throws Exception {
+        Field field = DistributedReentrantLock.class.getDeclaredField(name);
+        field.setAccessible(true);
+        field.set(target, value);
+    }
+
+}
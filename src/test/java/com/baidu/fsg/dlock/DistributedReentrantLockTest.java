@@ -1,11 +1,14 @@
 package com.baidu.fsg.dlock;
 
+import java.io.File;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.Random;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.concurrent.locks.Lock;
 
 import javax.annotation.Resource;
@@ -19,10 +22,20 @@ import org.springframework.test.context.ContextConfiguration;
 import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
 
 import com.baidu.fsg.dlock.domain.DLockConfig;
+import com.baidu.fsg.dlock.domain.DLockEncoding;
+import com.baidu.fsg.dlock.domain.DLockEntity;
+import com.baidu.fsg.dlock.domain.DLockScope;
+import com.baidu.fsg.dlock.exception.LeaseLostException;
+import com.baidu.fsg.dlock.exception.OptimisticLockingException;
 import com.baidu.fsg.dlock.jedis.JedisClient;
 import com.baidu.fsg.dlock.processor.impl.RedisLockProcessor;
+import com.baidu.fsg.dlock.support.HostLockTable;
+import com.baidu.fsg.dlock.utils.LockerUtils;
 import com.baidu.fsg.dlock.utils.ReflectionUtils;
 
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisPool;
+
 /**
  * Test for {@link DistributedReentrantLock}.<p>
  * 
@@ -41,6 +54,9 @@ public class DistributedReentrantLockTest {
     @Resource
     private JedisClient jedisClient;
 
+    @Resource
+    private JedisPool jedisPool;
+
     /**
      * DistributedReentrantLock instance
      */
@@ -56,6 +72,11 @@ public class DistributedReentrantLockTest {
      */
     private Lock lockSingleServer;
 
+    /**
+     * DistributedReentrantLock with process scope. Used for single server test
+     */
+    private Lock lockProcessScope;
+
     /**
      * CountDownLatch used for multi servers
      */
@@ -66,6 +87,10 @@ public class DistributedReentrantLockTest {
         DLockConfig singleServerLockConfig = new DLockConfig("USER_LOCK", "778899", 1000, TimeUnit.MILLISECONDS);
         lockSingleServer = new DistributedReentrantLock(singleServerLockConfig, lockProcessor);
 
+        DLockConfig processScopeLockConfig = new DLockConfig("USER_LOCK", "778800", 1000, TimeUnit.MILLISECONDS);
+        processScopeLockConfig.setLockScope(DLockScope.PROCESS);
+        lockProcessScope = new DistributedReentrantLock(processScopeLockConfig, lockProcessor);
+
         // The retry thread's execute interval is depended on The lease duration (Retry interval = lease ms * 0.75)
         DLockConfig multiServerLockConfig = new DLockConfig("USER_LOCK", "778899", 500, TimeUnit.MILLISECONDS);
         lockOnServer1 = new DistributedReentrantLock(multiServerLockConfig, lockProcessor);
@@ -74,6 +99,7 @@ public class DistributedReentrantLockTest {
         // Delete unique key of the last round test
         jedisClient.del(singleServerLockConfig.getLockUniqueKey());
         jedisClient.del(multiServerLockConfig.getLockUniqueKey());
+        jedisClient.del(processScopeLockConfig.getLockUniqueKey());
     }
 
     /**
@@ -123,6 +149,527 @@ public class DistributedReentrantLockTest {
         }
     }
 
+    /**
+     * Case4: Test for one server - multi threads, with process scope. The remote lock is handed over locally.
+     */
+    @Test
+    public void testProcessScope() throws Exception {
+        launchSingleServer(20, "P1", lockProcessScope, 200);
+
+        checkHoldCnt(lockProcessScope);
+        // the remote lock is released after the last local holder
+        DLockConfig lockConfig = (DLockConfig) ReflectionUtils.getProperty(lockProcessScope, "lockConfig");
+        Assert.assertNull(jedisClient.get(lockConfig.getLockUniqueKey()));
+    }
+
+    /**
+     * Case5: Test for compact encoding, the key & value are binary
+     */
+    @Test
+    public void testCompactEncoding() throws Exception {
+        DLockConfig lockConfig = new DLockConfig("CUSTOMER_LOCK", "778899", 1000, TimeUnit.MILLISECONDS);
+        lockConfig.setEncoding(DLockEncoding.COMPACT);
+        jedisClient.del(lockConfig.getLockUniqueKeyBytes());
+
+        Lock lock = new DistributedReentrantLock(lockConfig, lockProcessor);
+        lock.lock();
+        try {
+            // prefix(1) + type id(5) + numeric target(9)
+            Assert.assertEquals(15, lockConfig.getLockUniqueKeyBytes().length);
+            Assert.assertEquals(LockerUtils.getThreadLocker(), lockProcessor.load(lockConfig).getLocker());
+            Assert.assertFalse(lockProcessor.isLockFree(lockConfig));
+        } finally {
+            lock.unlock();
+        }
+
+        Assert.assertTrue(lockProcessor.isLockFree(lockConfig));
+
+        launchSingleServer(10, "C1", lock, 100);
+        checkHoldCnt(lock);
+    }
+
+    /**
+     * Case6: Test for lease lost, the remote record is deleted by the other one while holding
+     */
+    @Test
+    public void testLeaseLost() throws Exception {
+        DLockConfig lockConfig = new DLockConfig("CUSTOMER_LOCK", "lease-lost", 400, TimeUnit.MILLISECONDS);
+        DistributedReentrantLock lock = new DistributedReentrantLock(lockConfig, lockProcessor);
+
+        final CountDownLatch lostLatch = new CountDownLatch(1);
+        final AtomicReference<Thread> lostOwner = new AtomicReference<>();
+        lock.addLeaseListener(new DLockLeaseListener() {
+            @Override
+            public void onLeaseLost(DLockConfig lockConfig, Thread owner) {
+                lostOwner.set(owner);
+                lostLatch.countDown();
+            }
+        });
+
+        lock.lock();
+        try {
+            Assert.assertTrue(lock.isHeldRemotely());
+            lock.checkValidity();
+
+            // delete the remote record, the lease expanding will fail
+            jedisClient.del(lockConfig.getLockUniqueKey());
+            Assert.assertTrue(lostLatch.await(2, TimeUnit.SECONDS));
+            Assert.assertEquals(Thread.currentThread(), lostOwner.get());
+            Assert.assertFalse(lock.isHeldRemotely());
+
+            try {
+                lock.checkValidity();
+                Assert.fail("Lease is lost");
+            } catch (LeaseLostException e) {
+                // expected
+            }
+        } finally {
+            lock.unlock();
+        }
+
+        Assert.assertFalse(lock.isHeldByCurrentThread());
+
+        // the remote unlock is skipped for the lost lease
+        DLockMetrics metrics = lock.getMetrics();
+        Assert.assertEquals(1, metrics.getAcquiredCount());
+        Assert.assertEquals(1, metrics.getLeaseLostCount());
+        Assert.assertEquals(1, metrics.getExpiredHoldCount());
+        Assert.assertEquals(0, metrics.getRemoteUnlockCount());
+
+        lock.lock();
+        lock.unlock();
+        Assert.assertEquals(1, metrics.getRemoteUnlockCount());
+    }
+
+    /**
+     * Case7: Test for fair lock, the lock is handed over to the waiter on the other server
+     */
+    @Test
+    public void testFairLock() throws Exception {
+        final DLockConfig lockConfig = new DLockConfig("CUSTOMER_LOCK", "fair", 1000, TimeUnit.MILLISECONDS);
+        lockConfig.setFair(true);
+        jedisClient.del(lockConfig.getLockUniqueKey());
+
+        DistributedReentrantLock lock1 = new DistributedReentrantLock(lockConfig, lockProcessor);
+        final DistributedReentrantLock lock2 = new DistributedReentrantLock(lockConfig, lockProcessor);
+
+        final CountDownLatch acquired = new CountDownLatch(1);
+        final CountDownLatch released = new CountDownLatch(1);
+        lock1.lock();
+        try {
+            // waiter on server2 is queued remotely
+            new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    lock2.lock();
+                    try {
+                        acquired.countDown();
+                        Thread.sleep(300);
+                    } catch (InterruptedException e) {
+                        // ignore
+                    } finally {
+                        lock2.unlock();
+                        released.countDown();
+                    }
+                }
+            }).start();
+            Thread.sleep(300);
+        } finally {
+            lock1.unlock();
+        }
+
+        // the lock is handed over, can't be barged
+        Assert.assertFalse(lock1.tryLock());
+        Assert.assertTrue(acquired.await(2, TimeUnit.SECONDS));
+        Assert.assertTrue(released.await(2, TimeUnit.SECONDS));
+        Assert.assertTrue(lockProcessor.isLockFree(lockConfig));
+
+        launchSingleServer(10, "F1", lock1, 100);
+        checkHoldCnt(lock1);
+    }
+
+    /**
+     * Case8: Test for deferred lease renewal, the short critical section never renews
+     */
+    @Test
+    public void testDeferredRenewal() throws Exception {
+        DLockConfig lockConfig = new DLockConfig("CUSTOMER_LOCK", "deferred-renewal", 400, TimeUnit.MILLISECONDS);
+        lockConfig.setLeaseRenewRatio(0.5);
+        DistributedReentrantLock lock = new DistributedReentrantLock(lockConfig, lockProcessor);
+
+        for (int i = 0; i < 5; i++) {
+            lock.lock();
+            try {
+                Thread.sleep(20);
+            } finally {
+                lock.unlock();
+            }
+        }
+        Assert.assertEquals(0, lock.getMetrics().getExpandedCount());
+
+        // renew after half lease
+        lock.lock();
+        try {
+            Thread.sleep(500);
+            Assert.assertTrue(lock.isHeldRemotely());
+        } finally {
+            lock.unlock();
+        }
+        Assert.assertTrue(lock.getMetrics().getExpandedCount() >= 1);
+        Assert.assertEquals(6, lock.getMetrics().getRemoteUnlockCount());
+    }
+
+    /**
+     * Case9: Test for release signal, the waiter on the other server competes at once instead of waiting the lease
+     */
+    @Test
+    public void testReleaseSignal() throws Exception {
+        DLockConfig lockConfig = new DLockConfig("CUSTOMER_LOCK", "release-signal", 6000, TimeUnit.MILLISECONDS);
+        jedisClient.del(lockConfig.getLockUniqueKey());
+
+        DistributedReentrantLock lock1 = new DistributedReentrantLock(lockConfig, lockProcessor);
+        final DistributedReentrantLock lock2 = new DistributedReentrantLock(lockConfig, lockProcessor);
+
+        final CountDownLatch acquired = new CountDownLatch(1);
+        lock1.lock();
+        try {
+            new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    lock2.lock();
+                    try {
+                        acquired.countDown();
+                    } finally {
+                        lock2.unlock();
+                    }
+                }
+            }).start();
+
+            // the retry thread has read the remaining lease & subscribed the release signal
+            Thread.sleep(1000);
+            Assert.assertEquals(1, acquired.getCount());
+        } finally {
+            lock1.unlock();
+        }
+
+        long start = System.currentTimeMillis();
+        Assert.assertTrue(acquired.await(3, TimeUnit.SECONDS));
+        Assert.assertTrue(System.currentTimeMillis() - start < 1000);
+    }
+
+    /**
+     * Case10: Test for failed acquisition, the current locker & expire time are retrieved in the same round trip
+     */
+    @Test
+    public void testAcquireFailureWithHolder() throws Exception {
+        DLockConfig lockConfig = new DLockConfig("CUSTOMER_LOCK", "holder", 2000, TimeUnit.MILLISECONDS);
+        jedisClient.del(lockConfig.getLockUniqueKey());
+
+        DistributedReentrantLock lock = new DistributedReentrantLock(lockConfig, lockProcessor);
+        lock.lock();
+        try {
+            DLockEntity holder = lockProcessor.load(lockConfig);
+
+            DLockEntity newLock = new DLockEntity();
+            newLock.setLocker(LockerUtils.getProcessLocker());
+            long now = System.currentTimeMillis();
+            try {
+                lockProcessor.updateForLock(newLock, lockConfig);
+                Assert.fail("The lock is hold by the other one");
+            } catch (OptimisticLockingException e) {
+                DLockEntity currentLock = e.getCurrentLock();
+                Assert.assertNotNull(currentLock);
+                Assert.assertEquals(holder.getLocker(), currentLock.getLocker());
+                Assert.assertTrue(currentLock.getExpireTime() > now);
+                Assert.assertTrue(currentLock.getExpireTime() <= System.currentTimeMillis() + 2000);
+            }
+        } finally {
+            lock.unlock();
+        }
+        Assert.assertTrue(lockProcessor.isLockFree(lockConfig));
+    }
+
+    /**
+     * Case11: Test for bulk loading, the keys are loaded by chunks, and the compact lockers are decoded
+     */
+    @Test
+    public void testLoadAll() throws Exception {
+        DLockConfig lockConfig1 = new DLockConfig("CUSTOMER_LOCK", "bulk-1", 2000, TimeUnit.MILLISECONDS);
+        DLockConfig lockConfig2 = new DLockConfig("CUSTOMER_LOCK", "bulk-2", 2000, TimeUnit.MILLISECONDS);
+        DLockConfig lockConfig3 = new DLockConfig("CUSTOMER_LOCK", "bulk-3", 2000, TimeUnit.MILLISECONDS);
+        lockConfig3.setEncoding(DLockEncoding.COMPACT);
+        jedisClient.del(lockConfig1.getLockUniqueKey());
+        jedisClient.del(lockConfig2.getLockUniqueKey());
+        jedisClient.del(lockConfig3.getLockUniqueKeyBytes());
+
+        List<DLockConfig> lockConfigs = new ArrayList<>();
+        lockConfigs.add(lockConfig1);
+        for (int i = 0; i < 1000; i++) {
+            lockConfigs.add(new DLockConfig("CUSTOMER_LOCK", "bulk-free-" + i, 2000, TimeUnit.MILLISECONDS));
+        }
+        lockConfigs.add(lockConfig2);
+        lockConfigs.add(lockConfig3);
+
+        DistributedReentrantLock lock1 = new DistributedReentrantLock(lockConfig1, lockProcessor);
+        DistributedReentrantLock lock2 = new DistributedReentrantLock(lockConfig2, lockProcessor);
+        DistributedReentrantLock lock3 = new DistributedReentrantLock(lockConfig3, lockProcessor);
+        lock1.lock();
+        lock2.lock();
+        lock3.lock();
+        try {
+            long now = System.currentTimeMillis();
+            Map<String, DLockEntity> locks = lockProcessor.loadAll(lockConfigs);
+            Assert.assertEquals(3, locks.size());
+
+            DLockEntity lock = locks.get(lockConfig2.getLockUniqueKey());
+            Assert.assertEquals(lockProcessor.load(lockConfig2).getLocker(), lock.getLocker());
+            Assert.assertTrue(lock.getExpireTime() > now);
+            Assert.assertTrue(lock.getExpireTime() <= System.currentTimeMillis() + 2000);
+
+            // the compact locker is decoded as the same as the text one
+            DLockEntity compactLock = locks.get(lockConfig3.getLockUniqueKey());
+            Assert.assertEquals(LockerUtils.getThreadLocker(), compactLock.getLocker());
+            Assert.assertEquals(lockProcessor.load(lockConfig3).getLocker(), compactLock.getLocker());
+            Assert.assertTrue(compactLock.getExpireTime() > now);
+        } finally {
+            lock3.unlock();
+            lock2.unlock();
+            lock1.unlock();
+        }
+        Assert.assertTrue(lockProcessor.loadAll(lockConfigs).isEmpty());
+    }
+
+    /**
+     * Case12: Test for host coordination, the process on the same host fails locally while the other one holds
+     */
+    @Test
+    public void testHostLockTable() throws Exception {
+        DLockConfig lockConfig = new DLockConfig("CUSTOMER_LOCK", "host", 1000, TimeUnit.MILLISECONDS);
+        jedisClient.del(lockConfig.getLockUniqueKey());
+
+        File tableFile = File.createTempFile("dlock-host", ".table");
+        tableFile.deleteOnExit();
+        HostLockTable table1 = new HostLockTable(tableFile.getPath());
+        HostLockTable table2 = new HostLockTable(tableFile.getPath());
+        try {
+            DistributedReentrantLock lock1 = new DistributedReentrantLock(lockConfig, lockProcessor);
+            DistributedReentrantLock lock2 = new DistributedReentrantLock(lockConfig, lockProcessor);
+            lock1.setHostLockTable(table1);
+            lock2.setHostLockTable(table2);
+
+            lock1.lock();
+            try {
+                // no remote competition even if the remote lock is gone
+                jedisClient.del(lockConfig.getLockUniqueKey());
+                Assert.assertFalse(lock2.tryLock());
+
+                // the other key is never blocked
+                HostLockTable.Slot otherSlot = table2.tryAcquire(lockConfig.getLockUniqueKey() + "-other");
+                Assert.assertNotNull(otherSlot);
+                otherSlot.release();
+            } finally {
+                lock1.unlock();
+            }
+
+            Assert.assertTrue(lock2.tryLock());
+            lock2.unlock();
+            Assert.assertTrue(lockProcessor.isLockFree(lockConfig));
+        } finally {
+            table1.close();
+            table2.close();
+        }
+    }
+
+    /**
+     * Case13: Test for the bulk release of the held locks, the owner's unlock makes no remote call after it
+     */
+    @Test
+    public void testReleaseAllHeld() throws Exception {
+        DLockConfig lockConfig1 = new DLockConfig("CUSTOMER_LOCK", "held1", 5000, TimeUnit.MILLISECONDS);
+        DLockConfig lockConfig2 = new DLockConfig("CUSTOMER_LOCK", "held2", 5000, TimeUnit.MILLISECONDS);
+        lockConfig2.setLockScope(DLockScope.PROCESS);
+        jedisClient.del(lockConfig1.getLockUniqueKey());
+        jedisClient.del(lockConfig2.getLockUniqueKey());
+
+        DistributedReentrantLock lock1 = new DistributedReentrantLock(lockConfig1, lockProcessor);
+        DistributedReentrantLock lock2 = new DistributedReentrantLock(lockConfig2, lockProcessor);
+        AtomicInteger lostCount = new AtomicInteger();
+        lock1.addLeaseListener((lockConfig, owner) -> lostCount.incrementAndGet());
+        int heldCount = DLockRegistry.getHeldCount();
+        lock1.lock();
+        lock2.lock();
+        Assert.assertEquals(heldCount + 2, DLockRegistry.getHeldCount());
+
+        Assert.assertTrue(DLockRegistry.releaseAll(lockProcessor) >= 2);
+        Assert.assertEquals(0, DLockRegistry.getHeldCount());
+        Assert.assertTrue(lockProcessor.isLockFree(lockConfig1));
+        Assert.assertTrue(lockProcessor.isLockFree(lockConfig2));
+        Assert.assertFalse(lock1.isHeldRemotely());
+
+        // the detached lease is lost
+        Assert.assertEquals(1, lostCount.get());
+        Assert.assertEquals(1, lock1.getMetrics().getLeaseLostCount());
+
+        // the other one takes over, and is not released by the owner's unlock
+        DistributedReentrantLock otherLock = new DistributedReentrantLock(lockConfig1, lockProcessor);
+        Thread other = new Thread(otherLock::lock);
+        other.start();
+        other.join();
+
+        lock1.unlock();
+        lock2.unlock();
+        Assert.assertFalse(lockProcessor.isLockFree(lockConfig1));
+        Assert.assertEquals(1, DLockRegistry.getHeldCount());
+        Assert.assertEquals(1, lock1.getMetrics().getExpiredHoldCount());
+        Assert.assertEquals(0, lock1.getMetrics().getRemoteUnlockCount());
+
+        Assert.assertEquals(1, DLockRegistry.releaseAll());
+        Assert.assertTrue(lockProcessor.isLockFree(lockConfig1));
+    }
+
+    /**
+     * Case14: Test for the warmed up pool & preloaded scripts, the script is sent again once the cache is flushed
+     */
+    @Test
+    public void testScriptPreload() {
+        Assert.assertTrue(lockProcessor.isReady());
+        Assert.assertTrue(jedisClient.getNumIdle() > 0);
+
+        DLockConfig lockConfig = new DLockConfig("CUSTOMER_LOCK", "script", 1000, TimeUnit.MILLISECONDS);
+        jedisClient.del(lockConfig.getLockUniqueKey());
+
+        Jedis jedis = jedisPool.getResource();
+        try {
+            jedis.scriptFlush();
+        } finally {
+            jedis.close();
+        }
+
+        DistributedReentrantLock lock = new DistributedReentrantLock(lockConfig, lockProcessor);
+        Assert.assertTrue(lock.tryLock());
+        lock.unlock();
+        Assert.assertTrue(lockProcessor.isLockFree(lockConfig));
+        Assert.assertTrue(lockProcessor.isReady());
+    }
+
+    /**
+     * Case15: Test for the dedicated lease pool, the holder unlocks while the acquiring pool is exhausted
+     */
+    @Test
+    public void testLeasePool() {
+        Assert.assertTrue(jedisClient.hasLeasePool());
+
+        DLockConfig lockConfig = new DLockConfig("CUSTOMER_LOCK", "leasePool", 5000, TimeUnit.MILLISECONDS);
+        jedisClient.del(lockConfig.getLockUniqueKey());
+
+        DistributedReentrantLock lock = new DistributedReentrantLock(lockConfig, lockProcessor);
+        lock.lock();
+
+        // exhaust the acquiring pool(redis.pool.maxTotal)
+        List<Jedis> borrowed = new ArrayList<>();
+        try {
+            for (int i = jedisPool.getNumActive(); i < 32; i++) {
+                borrowed.add(jedisPool.getResource());
+            }
+
+            long start = System.currentTimeMillis();
+            lock.unlock();
+            Assert.assertTrue(System.currentTimeMillis() - start < 1000);
+        } finally {
+            for (Jedis jedis : borrowed) {
+                jedis.close();
+            }
+        }
+
+        Assert.assertTrue(lockProcessor.isLockFree(lockConfig));
+        Assert.assertEquals(1, lock.getMetrics().getRemoteUnlockCount());
+    }
+
+    /**
+     * Case16: Test for the process scope instances of the same key, the instance never releases the lock of the
+     * other one after its lease is lost
+     */
+    @Test
+    public void testProcessScopeInstances() throws Exception {
+        DLockConfig lockConfig = new DLockConfig("CUSTOMER_LOCK", "instances", 5000, TimeUnit.MILLISECONDS);
+        lockConfig.setLockScope(DLockScope.PROCESS);
+        lockConfig.setEncoding(DLockEncoding.COMPACT);
+        jedisClient.del(lockConfig.getLockUniqueKeyBytes());
+
+        DistributedReentrantLock lock1 = new DistributedReentrantLock(lockConfig, lockProcessor);
+        DistributedReentrantLock lock2 = new DistributedReentrantLock(lockConfig, lockProcessor);
+        lock1.lock();
+        try {
+            Assert.assertFalse(lock2.tryLock());
+
+            // the lease of lock1 is lost, kind of a long GC pause
+            jedisClient.del(lockConfig.getLockUniqueKeyBytes());
+            Assert.assertTrue(lock2.tryLock());
+        } finally {
+            lock1.unlock();
+        }
+
+        DLockEntity holder = lockProcessor.load(lockConfig);
+        Assert.assertNotNull(holder);
+        Assert.assertTrue(holder.getLocker().startsWith(LockerUtils.getProcessLocker()));
+        Assert.assertFalse(LockerUtils.getProcessLocker().equals(holder.getLocker()));
+
+        lock2.unlock();
+        Assert.assertTrue(lockProcessor.isLockFree(lockConfig));
+    }
+
+    /**
+     * Case17: Test for the fair lock instances in one process, the held or handed over lock is never taken by the
+     * other instance sharing the thread or process locker
+     */
+    @Test
+    public void testFairLockInstances() throws Exception {
+        DLockConfig threadLockConfig = new DLockConfig("CUSTOMER_LOCK", "fairInstances", 1000, TimeUnit.MILLISECONDS);
+        threadLockConfig.setFair(true);
+        DLockConfig processLockConfig = new DLockConfig("CUSTOMER_LOCK", "fairInstances", 1000, TimeUnit.MILLISECONDS);
+        processLockConfig.setFair(true);
+        processLockConfig.setLockScope(DLockScope.PROCESS);
+        jedisClient.del(threadLockConfig.getLockUniqueKey());
+
+        // the same thread on the other instance
+        DistributedReentrantLock lock1 = new DistributedReentrantLock(threadLockConfig, lockProcessor);
+        DistributedReentrantLock lock2 = new DistributedReentrantLock(threadLockConfig, lockProcessor);
+        lock1.lock();
+        try {
+            Assert.assertFalse(lock2.tryLock());
+        } finally {
+            lock1.unlock();
+        }
+
+        // the waiter of process scope is handed over, the other thread of its instance can't barge
+        final DistributedReentrantLock lock3 = new DistributedReentrantLock(processLockConfig, lockProcessor);
+        final CountDownLatch acquired = new CountDownLatch(1);
+        final CountDownLatch released = new CountDownLatch(1);
+        lock1.lock();
+        try {
+            new Thread(() -> {
+                lock3.lock();
+                try {
+                    acquired.countDown();
+                    Thread.sleep(300);
+                } catch (InterruptedException e) {
+                    // ignore
+                } finally {
+                    lock3.unlock();
+                    released.countDown();
+                }
+            }).start();
+            Thread.sleep(300);
+        } finally {
+            lock1.unlock();
+        }
+
+        Assert.assertFalse(lock3.tryLock());
+        Assert.assertTrue(acquired.await(2, TimeUnit.SECONDS));
+        Assert.assertTrue(released.await(2, TimeUnit.SECONDS));
+        Assert.assertTrue(lockProcessor.isLockFree(processLockConfig));
+    }
+
     /**
      * Launch threads on a single server
      * 
@@ -153,8 +700,8 @@ public class DistributedReentrantLockTest {
      * Check hold cnt of lock
      */
     private void checkHoldCnt(Lock lock) throws Exception {
-        AtomicInteger holdCnt = (AtomicInteger) ReflectionUtils.getProperty(lock, "holdCount");
-        Assert.assertEquals(0, holdCnt.get());
+        Integer holdCnt = (Integer) ReflectionUtils.getProperty(lock, "holdCount");
+        Assert.assertEquals(0, holdCnt.intValue());
     }
 
     /**
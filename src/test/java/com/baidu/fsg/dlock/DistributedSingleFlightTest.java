@@ -0,0 +1,105 @@
+package com.baidu.fsg.dlock;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.annotation.Resource;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+
+import com.baidu.fsg.dlock.domain.DLockConfig;
+import com.baidu.fsg.dlock.support.DLockGenerator;
+
+/**
+ * Test for {@link DistributedSingleFlight}
+ *
+ * @author yutianbao
+ */
+@RunWith(SpringJUnit4ClassRunner.class)
+@ContextConfiguration(locations = { "classpath:dlock/spring-dlock.xml" })
+public class DistributedSingleFlightTest {
+
+    @Resource
+    private DLockGenerator lockGenerator;
+
+    /**
+     * Case1: Test for the concurrent callers of the same key, the work is computed once
+     */
+    @Test
+    public void testExecuteOnce() throws Exception {
+        final DLockConfig lockConfig = new DLockConfig("CUSTOMER_LOCK", "single-flight", 1000, TimeUnit.MILLISECONDS);
+        final AtomicInteger computed = new AtomicInteger(0);
+        final AtomicInteger shared = new AtomicInteger(0);
+        final CountDownLatch started = new CountDownLatch(1);
+
+        final Callable<Integer> work = new Callable<Integer>() {
+            @Override
+            public Integer call() throws Exception {
+                Thread.sleep(300);
+                return computed.incrementAndGet();
+            }
+        };
+
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            Thread t = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        started.await();
+                        if (lockGenerator.executeOnce(lockConfig, work) == 1) {
+                            shared.incrementAndGet();
+                        }
+                    } catch (Exception e) {
+                        // fail by the shared count
+                    }
+                }
+            });
+            t.start();
+            threads.add(t);
+        }
+
+        started.countDown();
+        for (Thread t : threads) {
+            t.join();
+        }
+
+        Assert.assertEquals(1, computed.get());
+        Assert.assertEquals(50, shared.get());
+    }
+
+    /**
+     * Case2: Test for the exception of the work, it is thrown to the caller
+     */
+    @Test
+    public void testExecuteOnceException() throws Exception {
+        DLockConfig lockConfig = new DLockConfig("CUSTOMER_LOCK", "single-flight-ex", 1000, TimeUnit.MILLISECONDS);
+        try {
+            lockGenerator.executeOnce(lockConfig, new Callable<Object>() {
+                @Override
+                public Object call() throws Exception {
+                    throw new IllegalStateException("compute failed");
+                }
+            });
+            Assert.fail("The exception of the work should be thrown");
+        } catch (IllegalStateException e) {
+            Assert.assertEquals("compute failed", e.getMessage());
+        }
+
+        // the next flight is started
+        Assert.assertEquals("OK", lockGenerator.executeOnce(lockConfig, new Callable<String>() {
+            @Override
+            public String call() throws Exception {
+                return "OK";
+            }
+        }));
+    }
+}
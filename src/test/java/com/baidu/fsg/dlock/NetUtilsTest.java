@@ -0,0 +1,71 @@
+package com.baidu.fsg.dlock;
+
+import java.net.InetAddress;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.baidu.fsg.dlock.utils.NetUtils;
+
+/**
+ * Test for the CIDR & IP literal parsing of {@link NetUtils}
+ *
+ * @author yutianbao
+ */
+public class NetUtilsTest {
+
+    /**
+     * Case1: Test for the IPv4 CIDR, including the /0 and /32 prefixes
+     */
+    @Test
+    public void testIpv4Cidr() throws Exception {
+        InetAddress address = InetAddress.getByName("10.20.30.40");
+
+        Assert.assertTrue(NetUtils.matchesCidr(address, "10.0.0.0/8"));
+        Assert.assertTrue(NetUtils.matchesCidr(address, "10.20.28.0/22"));
+        Assert.assertFalse(NetUtils.matchesCidr(address, "10.20.32.0/22"));
+        Assert.assertFalse(NetUtils.matchesCidr(address, "192.168.0.0/16"));
+
+        // /0 matches any address of the same family, /32 and the bare address match exactly
+        Assert.assertTrue(NetUtils.matchesCidr(address, "0.0.0.0/0"));
+        Assert.assertTrue(NetUtils.matchesCidr(address, "10.20.30.40/32"));
+        Assert.assertFalse(NetUtils.matchesCidr(address, "10.20.30.41/32"));
+        Assert.assertTrue(NetUtils.matchesCidr(address, " 10.20.30.40 "));
+        Assert.assertFalse(NetUtils.matchesCidr(address, "10.20.30.41"));
+    }
+
+    /**
+     * Case2: Test for the IPv6 CIDR, which never matches the IPv4 address
+     */
+    @Test
+    public void testIpv6Cidr() throws Exception {
+        InetAddress address = InetAddress.getByName("fd00:1234::abcd");
+
+        Assert.assertTrue(NetUtils.matchesCidr(address, "fd00::/8"));
+        Assert.assertTrue(NetUtils.matchesCidr(address, "fd00:1234::/32"));
+        Assert.assertFalse(NetUtils.matchesCidr(address, "fd00:1235::/32"));
+        Assert.assertTrue(NetUtils.matchesCidr(address, "::/0"));
+        Assert.assertTrue(NetUtils.matchesCidr(address, "fd00:1234::abcd/128"));
+        Assert.assertFalse(NetUtils.matchesCidr(address, "fd00:1234::abce"));
+
+        // the address families don't match each other
+        Assert.assertFalse(NetUtils.matchesCidr(address, "0.0.0.0/0"));
+        Assert.assertFalse(NetUtils.matchesCidr(InetAddress.getByName("10.20.30.40"), "::/0"));
+    }
+
+    /**
+     * Case3: Test for the malformed CIDR, which matches nothing and never resolves the host name
+     */
+    @Test
+    public void testMalformedCidr() throws Exception {
+        InetAddress address = InetAddress.getByName("10.20.30.40");
+
+        String[] malformed = { null, "", "/8", "10.20.30/24", "10.20.30.40.50", "10.20.30.256/8", "10.20.30.-1",
+                "10..30.40", "10.20.30.40/33", "10.20.30.40/-1", "10.20.30.40/abc", "10.20.30.40/8/8", "localhost",
+                "localhost/8", "fd00::/129", "fd00::zz/8", "1234" };
+        for (String cidr : malformed) {
+            Assert.assertFalse(cidr, NetUtils.matchesCidr(address, cidr));
+        }
+    }
+
+}
@@ -0,0 +1,131 @@
+package com.baidu.fsg.dlock;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.Lock;
+
+import javax.annotation.Resource;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+
+import com.baidu.fsg.dlock.domain.DLockType;
+import com.baidu.fsg.dlock.support.DLockGenerator;
+import com.baidu.fsg.dlock.utils.ReflectionUtils;
+
+/**
+ * Test for {@link StripedDistributedLock}
+ *
+ * @author yutianbao
+ */
+@RunWith(SpringJUnit4ClassRunner.class)
+@ContextConfiguration(locations = { "classpath:dlock/spring-dlock.xml" })
+public class StripedDistributedLockTest {
+
+    @Resource
+    private DLockGenerator lockGenerator;
+
+    /**
+     * Counters of the lock targets, guarded by the striped lock
+     */
+    private final int[] counters = new int[20];
+
+    /**
+     * Case1: Test for the stripe mapping
+     */
+    @Test
+    public void testStripeMapping() {
+        StripedDistributedLock stripedLock = lockGenerator.genStriped(DLockType.CUSTOMER_LOCK, 5);
+
+        // stripe count is rounded up to power of two
+        Assert.assertEquals(8, stripedLock.getStripeCount());
+        for (int i = 0; i < 1000; i++) {
+            int stripe = stripedLock.stripeOf(String.valueOf(i));
+            Assert.assertTrue(stripe >= 0 && stripe < 8);
+            Assert.assertEquals(stripe, stripedLock.stripeOf(String.valueOf(i)));
+        }
+    }
+
+    /**
+     * Case2: Test for multi threads - multi targets
+     */
+    @Test
+    public void testMultiTargets() throws Exception {
+        StripedDistributedLock stripedLock = lockGenerator.genStriped(DLockType.CUSTOMER_LOCK, 4);
+
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            threads.add(new Thread(() -> {
+                for (int j = 0; j < counters.length; j++) {
+                    Lock lock = stripedLock.get("striped-" + j);
+                    lock.lock();
+                    try {
+                        counters[j]++;
+                    } finally {
+                        lock.unlock();
+                    }
+                }
+            }));
+        }
+
+        threads.forEach(t -> t.start());
+        for (Thread t : threads) {
+            t.join();
+        }
+
+        long acquiredCount = 0;
+        for (int i = 0; i < stripedLock.getStripeCount(); i++) {
+            acquiredCount += stripedLock.getAcquiredCount(i);
+            Assert.assertEquals(0, stripedLock.getQueueLength(i));
+        }
+        Assert.assertEquals(20 * counters.length, acquiredCount);
+
+        for (int counter : counters) {
+            Assert.assertEquals(20, counter);
+        }
+
+        // no remote lock is kept after unlock
+        Object[] stripes = (Object[]) ReflectionUtils.getProperty(stripedLock, "stripes");
+        for (Object stripe : stripes) {
+            Assert.assertTrue(((Map<?, ?>) ReflectionUtils.getProperty(stripe, "remoteLocks")).isEmpty());
+        }
+    }
+
+    /**
+     * Case3: Test for the targets on the same stripe don't block each other
+     */
+    @Test
+    public void testSameStripeTargets() throws Exception {
+        StripedDistributedLock stripedLock = lockGenerator.genStriped(DLockType.CUSTOMER_LOCK, 1);
+
+        Lock heldLock = stripedLock.get("striped-held");
+        heldLock.lock();
+
+        Thread waiter = new Thread(() -> {
+            Lock lock = stripedLock.get("striped-held");
+            lock.lock();
+            lock.unlock();
+        });
+        waiter.start();
+        Thread.sleep(200);
+        Assert.assertEquals(1, stripedLock.getQueueLength(0));
+
+        // the other target is free to acquire while the held one is waited
+        Lock otherLock = stripedLock.get("striped-other");
+        Assert.assertTrue(otherLock.tryLock());
+        otherLock.unlock();
+
+        heldLock.unlock();
+        waiter.join();
+
+        Assert.assertEquals(0, stripedLock.getQueueLength(0));
+        Assert.assertEquals(3, stripedLock.getAcquiredCount(0));
+        Object stripe = ((Object[]) ReflectionUtils.getProperty(stripedLock, "stripes"))[0];
+        Assert.assertTrue(((Map<?, ?>) ReflectionUtils.getProperty(stripe, "remoteLocks")).isEmpty());
+    }
+
+}